@@ -4,16 +4,26 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.simibubi.worldshape.structure.DeferredCavePieces;
+import com.simibubi.worldshape.structure.TemplateWarmup;
+import com.simibubi.worldshape.structure.WStructureAssembler;
+import com.simibubi.worldshape.structure.WStructureProfiler;
 import com.simibubi.worldshape.structure.WStructureRegistry;
+import com.simibubi.worldshape.structure.WStructureTemplate;
 
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.AddReloadListenerEvent;
 import net.minecraftforge.eventbus.api.IEventBus;
 import net.minecraftforge.fml.ExtensionPoint;
 import net.minecraftforge.fml.ModLoadingContext;
 import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.config.ModConfig;
 import net.minecraftforge.fml.event.lifecycle.FMLClientSetupEvent;
 import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
+import net.minecraftforge.fml.event.server.FMLServerAboutToStartEvent;
+import net.minecraftforge.fml.event.server.FMLServerStartedEvent;
+import net.minecraftforge.fml.event.server.FMLServerStoppingEvent;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 import net.minecraftforge.fml.network.FMLNetworkConstants;
 
@@ -27,15 +37,25 @@ public class Worldshape {
 		IEventBus modEventBus = FMLJavaModLoadingContext.get()
 			.getModEventBus();
 
+		ModLoadingContext.get()
+			.registerConfig(ModConfig.Type.COMMON, WorldshapeConfig.SPEC);
+
 		WStructureRegistry.load();
 		WStructureRegistry.CUSTOM_STRUCTURES.register(modEventBus);
 		WStructureRegistry.CUSTOM_FEATURES.register(modEventBus);
 
 		modEventBus.addListener(this::setup);
 		modEventBus.addListener(this::clientSetup);
+		modEventBus.addListener(WorldshapePack::onConfigChanged);
 
 		forgeEventBus.addListener(WStructureRegistry::addDimensionalSpacing);
 		forgeEventBus.addListener(WStructureRegistry::populateBiomes);
+		forgeEventBus.addListener(this::reloadListeners);
+		forgeEventBus.addListener(this::serverAboutToStart);
+		forgeEventBus.addListener(this::serverStarted);
+		forgeEventBus.addListener(this::serverStopping);
+		forgeEventBus.addListener(DeferredCavePieces::onChunkSave);
+		forgeEventBus.addListener(DeferredCavePieces::onChunkLoad);
 
 		ModLoadingContext.get()
 			.registerExtensionPoint(ExtensionPoint.DISPLAYTEST,
@@ -46,11 +66,34 @@ public class Worldshape {
 		event.enqueueWork(() -> {
 			WStructureRegistry.setupStructureSpacing();
 			WStructureRegistry.registerConfiguredStructures();
+			WStructureProfiler.logSummary();
 		});
 	}
 
 	void clientSetup(final FMLClientSetupEvent event) {}
 
+	void reloadListeners(final AddReloadListenerEvent event) {
+		// Datapacks may bring different template pools and templates
+		WStructureTemplate.clearPatternCache();
+		WStructureAssembler.clearCache();
+	}
+
+	void serverAboutToStart(final FMLServerAboutToStartEvent event) {
+		if (WorldshapeConfig.WARM_UP_TEMPLATES.get())
+			TemplateWarmup.run(event.getServer());
+	}
+
+	void serverStarted(final FMLServerStartedEvent event) {
+		// Biome and dimension phases only run once worlds are loaded
+		WStructureProfiler.logSummary();
+	}
+
+	void serverStopping(final FMLServerStoppingEvent event) {
+		WStructureProfiler.logSummary();
+		WStructureTemplate.clearPatternCache();
+		WStructureAssembler.clearCache();
+	}
+
 	public static ResourceLocation asResource(String path) {
 		return new ResourceLocation(ID, path);
 	}
@@ -0,0 +1,44 @@
+package com.simibubi.worldshape;
+
+import net.minecraftforge.common.ForgeConfigSpec;
+import net.minecraftforge.common.ForgeConfigSpec.BooleanValue;
+import net.minecraftforge.common.ForgeConfigSpec.IntValue;
+
+public class WorldshapeConfig {
+
+	public static final ForgeConfigSpec SPEC;
+
+	public static final BooleanValue CACHE_TEMPLATES;
+	public static final IntValue TEMPLATE_CACHE_SIZE;
+
+	public static final BooleanValue CAVE_DISPATCHER;
+	public static final BooleanValue WARM_UP_TEMPLATES;
+	public static final BooleanValue CLIP_CAVE_STRUCTURES;
+
+	static {
+		ForgeConfigSpec.Builder builder = new ForgeConfigSpec.Builder();
+
+		builder.push("resources");
+		CACHE_TEMPLATES = builder.comment("Keep the raw bytes of .nbt templates served by worldshape packs in memory")
+			.define("cacheTemplates", false);
+		TEMPLATE_CACHE_SIZE = builder.comment("Upper bound of the template byte cache, in megabytes")
+			.defineInRange("templateCacheSize", 64, 1, 4096);
+		builder.pop();
+
+		builder.push("worldgen");
+		CAVE_DISPATCHER = builder.comment("Place all cave structures of a decoration stage through one shared feature,",
+			"instead of one feature per structure type. Takes effect for biomes loaded afterwards")
+			.define("caveDispatcher", false);
+		WARM_UP_TEMPLATES = builder.comment("Load all templates used by worldshape structures while the server starts,",
+			"instead of on the worldgen threads when each structure first generates")
+			.define("warmUpTemplates", false);
+		CLIP_CAVE_STRUCTURES = builder.comment("Only let cave structures place blocks into the chunk being decorated,",
+			"the rest is placed once the chunks it reaches into decorate and is saved with them until then.",
+			"Pending parts are left out while this is off. Takes effect for biomes loaded afterwards")
+			.define("clipCaveStructures", false);
+		builder.pop();
+
+		SPEC = builder.build();
+	}
+
+}
@@ -1,5 +1,6 @@
 package com.simibubi.worldshape;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
@@ -7,23 +8,25 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
-import com.google.common.base.Joiner;
+import com.simibubi.worldshape.foundation.PackIndex;
+import com.simibubi.worldshape.foundation.ResourceByteCache;
 
 import net.minecraft.resources.ResourcePackFileNotFoundException;
 import net.minecraft.resources.ResourcePackType;
 import net.minecraft.resources.data.IMetadataSectionSerializer;
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.fml.ModList;
+import net.minecraftforge.fml.config.ModConfig;
 import net.minecraftforge.fml.loading.FMLPaths;
 import net.minecraftforge.fml.loading.moddiscovery.ModFile;
 import net.minecraftforge.fml.packs.ModFileResourcePack;
@@ -31,6 +34,9 @@ import net.minecraftforge.fml.packs.ResourcePackLoader;
 
 public class WorldshapePack extends ModFileResourcePack {
 
+	public static final ResourceByteCache TEMPLATE_CACHE = new ResourceByteCache(0);
+	private static volatile boolean cacheTemplates;
+
 	public static void relocateModFileDatapack() {
 		try {
 			Field field = ResourcePackLoader.class.getDeclaredField("modResourcePacks");
@@ -58,6 +64,20 @@ public class WorldshapePack extends ModFileResourcePack {
 		}
 	}
 
+	/**
+	 * Applies the template cache settings whenever the config is loaded or
+	 * reloaded, so reading a resource does not need to look at them
+	 */
+	public static void onConfigChanged(ModConfig.ModConfigEvent event) {
+		if (event.getConfig()
+			.getSpec() != WorldshapeConfig.SPEC)
+			return;
+		cacheTemplates = WorldshapeConfig.CACHE_TEMPLATES.get();
+		TEMPLATE_CACHE.setCapacity(cacheTemplates ? WorldshapeConfig.TEMPLATE_CACHE_SIZE.get() * 1024L * 1024L : 0);
+	}
+
+	private volatile PackIndex index;
+
 	public WorldshapePack(ModFile modFile) {
 		super(modFile);
 	}
@@ -76,9 +96,25 @@ public class WorldshapePack extends ModFileResourcePack {
 	@Override
 	protected InputStream getResource(String name) throws IOException {
 		final Path path = getResourcePath(name);
-		if (!Files.exists(path))
+		if (!name.startsWith(ResourcePackType.SERVER_DATA.getDirectory() + "/")) {
+			if (!Files.exists(path))
+				throw new ResourcePackFileNotFoundException(path.toFile(), name);
+			return Files.newInputStream(path, StandardOpenOption.READ);
+		}
+
+		PackIndex.Entry entry = getIndex().get(name);
+		if (entry == null)
 			throw new ResourcePackFileNotFoundException(path.toFile(), name);
-		return Files.newInputStream(path, StandardOpenOption.READ);
+		if (!name.endsWith(".nbt") || !cacheTemplates)
+			return entry.open();
+
+		long lastModified = entry.lastModified();
+		byte[] data = TEMPLATE_CACHE.get(name, lastModified);
+		if (data == null) {
+			data = entry.read();
+			TEMPLATE_CACHE.put(name, lastModified, data);
+		}
+		return new ByteArrayInputStream(data);
 	}
 
 	private Path getResourcePath(String name) {
@@ -86,9 +122,25 @@ public class WorldshapePack extends ModFileResourcePack {
 			.resolve(Paths.get(Worldshape.ID, name));
 	}
 
+	private PackIndex getIndex() {
+		PackIndex index = this.index;
+		if (index != null)
+			return index;
+		synchronized (this) {
+			if (this.index == null) {
+				this.index = PackIndex.scan(getResourcePath(""), ResourcePackType.SERVER_DATA.getDirectory());
+				Worldshape.LOGGER.info("Indexed {} worldshape resources in {}ms", this.index.size(),
+					this.index.getScanNanos() / 1000000);
+			}
+			return this.index;
+		}
+	}
+
 	@Override
 	protected boolean hasResource(String name) {
-		return Files.exists(getResourcePath(name));
+		if (!name.startsWith(ResourcePackType.SERVER_DATA.getDirectory() + "/"))
+			return Files.exists(getResourcePath(name));
+		return getIndex().contains(name);
 	}
 
 	@Override
@@ -97,50 +149,50 @@ public class WorldshapePack extends ModFileResourcePack {
 		if (type == ResourcePackType.CLIENT_RESOURCES)
 			return Collections.emptyList();
 
-		try {
-			Path root = getResourcePath(type.getDirectory()).resolve(resourceNamespace)
-				.toAbsolutePath();
-			Path inputPath = root.getFileSystem()
-				.getPath(pathIn);
-			List<ResourceLocation> resources = Files.walk(root)
-				.map(path -> root.relativize(path.toAbsolutePath()))
-				.filter(path -> path.getNameCount() <= maxDepth)
-				.filter(path -> !path.toString()
-					.endsWith(".mcmeta"))
-				.filter(path -> path.startsWith(inputPath))
-				.filter(path -> filter.test(path.getFileName()
-					.toString()))
-				.map(path -> new ResourceLocation(resourceNamespace, Joiner.on('/')
-					.join(path)))
-				.collect(Collectors.toList());
-
-			return resources;
-
-		} catch (IOException e) {
-			return Collections.emptyList();
+		String root = type.getDirectory() + "/" + resourceNamespace + "/";
+		String prefix = pathIn.isEmpty() ? root : root + pathIn;
+		List<ResourceLocation> resources = new ArrayList<>();
+
+		for (String name : getIndex().withPrefix(prefix)
+			.keySet()) {
+			String path = name.substring(root.length());
+			if (!pathIn.isEmpty() && path.length() > pathIn.length() && path.charAt(pathIn.length()) != '/')
+				continue;
+			if (path.endsWith(".mcmeta"))
+				continue;
+			if (path.split("/").length > maxDepth)
+				continue;
+			if (!filter.test(path.substring(path.lastIndexOf('/') + 1)))
+				continue;
+			resources.add(new ResourceLocation(resourceNamespace, path));
 		}
+
+		return resources;
 	}
 
 	@Override
 	public Set<String> getNamespaces(ResourcePackType type) {
 		if (type == ResourcePackType.CLIENT_RESOURCES)
 			return Collections.emptySet();
+		return getIndex().getNamespaces(type.getDirectory());
+	}
 
-		try {
-			Path root = getResourcePath(type.getDirectory()).toAbsolutePath();
-			Set<String> namespaces = Files.walk(root, 1)
-				.map(path -> root.relativize(path.toAbsolutePath()))
-				.filter(path -> path.getNameCount() > 0)
-				.map(p -> p.toString()
-					.replaceAll("/$", ""))
-				.filter(s -> !s.isEmpty())
-				.collect(Collectors.toSet());
-
-			return namespaces;
-
-		} catch (IOException e) {
-			return Collections.emptySet();
+	@Override
+	public void close() {
+		// Resource managers close their packs when reloading, the next reload re-scans
+		PackIndex index;
+		synchronized (this) {
+			index = this.index;
+			this.index = null;
 		}
+		if (index != null)
+			index.close();
+		super.close();
+
+		if (TEMPLATE_CACHE.getHits() + TEMPLATE_CACHE.getMisses() > 0)
+			Worldshape.LOGGER.info("Template cache: {} hits, {} misses, {} evictions, {} entries using {}KB",
+				TEMPLATE_CACHE.getHits(), TEMPLATE_CACHE.getMisses(), TEMPLATE_CACHE.getEvictions(),
+				TEMPLATE_CACHE.getEntryCount(), TEMPLATE_CACHE.getSize() / 1024);
 	}
 
 }
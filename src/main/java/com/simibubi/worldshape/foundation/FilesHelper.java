@@ -89,7 +89,7 @@ public class FilesHelper {
 
 	}
 
-	private static JsonElement loadJson(InputStream inputStream) {
+	public static JsonElement loadJson(InputStream inputStream) {
 		try {
 			JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(inputStream)));
 			reader.setLenient(true);
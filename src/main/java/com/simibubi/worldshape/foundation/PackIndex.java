@@ -0,0 +1,199 @@
+package com.simibubi.worldshape.foundation;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Joiner;
+import com.simibubi.worldshape.Worldshape;
+
+/**
+ * Snapshot of all files below a pack root, keyed by their '/'-separated path
+ * relative to that root. Scanned once, then answers lookups from memory.
+ * <br>
+ * A zip archive placed next to the namespace folders contributes its entries
+ * to the namespace named after the archive, e.g. data/mypack.zip is served as
+ * data/mypack/... Where a loose file and an archived one share a path, the
+ * loose file wins.
+ */
+public class PackIndex {
+
+	private final NavigableMap<String, Entry> entries;
+	private final Map<String, Set<String>> namespaces;
+	private final List<ZipArchive> archives;
+	private final long scanNanos;
+
+	private PackIndex(NavigableMap<String, Entry> entries, Map<String, Set<String>> namespaces,
+		List<ZipArchive> archives, long scanNanos) {
+		this.entries = entries;
+		this.namespaces = namespaces;
+		this.archives = archives;
+		this.scanNanos = scanNanos;
+	}
+
+	public static PackIndex scan(Path root, String... directories) {
+		long start = System.nanoTime();
+		NavigableMap<String, Entry> entries = new TreeMap<>();
+		Map<String, Set<String>> namespaces = new HashMap<>();
+		List<ZipArchive> archives = new ArrayList<>();
+
+		for (String directory : directories) {
+			Path typeRoot = root.resolve(directory);
+			Set<String> found = new HashSet<>();
+			namespaces.put(directory, found);
+			if (!Files.isDirectory(typeRoot))
+				continue;
+
+			FilesHelper.forEachInFolder(typeRoot, ".zip", archivePath -> {
+				String namespace = getArchiveNamespace(archivePath);
+				try {
+					ZipArchive archive = ZipArchive.acquire(archivePath);
+					archives.add(archive);
+					archive.getEntries()
+						.forEach((name, entry) -> entries.put(directory + "/" + namespace + "/" + name,
+							new ArchiveEntry(archive, entry)));
+					found.add(namespace);
+				} catch (IOException e) {
+					Worldshape.LOGGER.warn("Could not read worldshape archive {}", archivePath, e);
+				}
+			});
+
+			FilesHelper.forEachInFolder(typeRoot, "/", namespaceFolder -> found.add(namespaceFolder.getFileName()
+				.toString()));
+
+			// Loose files take precedence over archived ones
+			try (Stream<Path> files = Files.walk(typeRoot)) {
+				files.filter(Files::isRegularFile)
+					.map(typeRoot::relativize)
+					.filter(path -> path.getNameCount() > 1)
+					.forEach(path -> entries.put(directory + "/" + Joiner.on('/')
+						.join(path), new LooseEntry(typeRoot.resolve(path))));
+			} catch (IOException e) {
+				Worldshape.LOGGER.warn("Could not index worldshape resources in {}", typeRoot, e);
+			}
+		}
+
+		return new PackIndex(entries, namespaces, archives, System.nanoTime() - start);
+	}
+
+	public static String getArchiveNamespace(Path archivePath) {
+		String filename = archivePath.getFileName()
+			.toString();
+		return filename.substring(0, filename.length() - ".zip".length());
+	}
+
+	public boolean contains(String name) {
+		return entries.containsKey(name);
+	}
+
+	@Nullable
+	public Entry get(String name) {
+		return entries.get(name);
+	}
+
+	/**
+	 * All entries whose path starts with the given string, in lexicographic order
+	 */
+	public SortedMap<String, Entry> withPrefix(String prefix) {
+		return entries.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+	}
+
+	public Set<String> getNamespaces(String directory) {
+		return Collections.unmodifiableSet(namespaces.getOrDefault(directory, Collections.emptySet()));
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getScanNanos() {
+		return scanNanos;
+	}
+
+	/**
+	 * Releases the archives of this index, their entries cannot be read anymore
+	 */
+	public void close() {
+		archives.forEach(ZipArchive::release);
+	}
+
+	public static abstract class Entry {
+
+		public abstract InputStream open() throws IOException;
+
+		public abstract byte[] read() throws IOException;
+
+		public abstract long lastModified() throws IOException;
+
+	}
+
+	static class LooseEntry extends Entry {
+
+		private final Path path;
+
+		LooseEntry(Path path) {
+			this.path = path;
+		}
+
+		@Override
+		public InputStream open() throws IOException {
+			return Files.newInputStream(path, StandardOpenOption.READ);
+		}
+
+		@Override
+		public byte[] read() throws IOException {
+			return Files.readAllBytes(path);
+		}
+
+		@Override
+		public long lastModified() throws IOException {
+			return Files.getLastModifiedTime(path)
+				.toMillis();
+		}
+
+	}
+
+	static class ArchiveEntry extends Entry {
+
+		private final ZipArchive archive;
+		private final ZipArchive.Entry entry;
+
+		ArchiveEntry(ZipArchive archive, ZipArchive.Entry entry) {
+			this.archive = archive;
+			this.entry = entry;
+		}
+
+		@Override
+		public InputStream open() throws IOException {
+			return new ByteArrayInputStream(read());
+		}
+
+		@Override
+		public byte[] read() throws IOException {
+			return archive.read(entry);
+		}
+
+		@Override
+		public long lastModified() {
+			return archive.getLastModified();
+		}
+
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.simibubi.worldshape.foundation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Least-recently-used cache of raw resource contents, bounded by the total
+ * number of bytes held. Entries are only served while the modification time
+ * they were stored with still matches.
+ */
+public class ResourceByteCache {
+
+	private final Map<String, Cached> entries = new LinkedHashMap<>(64, 0.75f, true);
+	private long capacity;
+	private long size;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public ResourceByteCache(long capacity) {
+		this.capacity = capacity;
+	}
+
+	@Nullable
+	public synchronized byte[] get(String name, long lastModified) {
+		Cached cached = entries.get(name);
+		if (cached != null && cached.lastModified == lastModified) {
+			hits++;
+			return cached.data;
+		}
+		if (cached != null)
+			remove(name);
+		misses++;
+		return null;
+	}
+
+	public synchronized void put(String name, long lastModified, byte[] data) {
+		if (data.length > capacity)
+			return;
+		remove(name);
+		entries.put(name, new Cached(lastModified, data));
+		size += data.length;
+		trim();
+	}
+
+	public synchronized void setCapacity(long capacity) {
+		this.capacity = capacity;
+		trim();
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		size = 0;
+	}
+
+	private void remove(String name) {
+		Cached removed = entries.remove(name);
+		if (removed != null)
+			size -= removed.data.length;
+	}
+
+	private void trim() {
+		Iterator<Cached> iterator = entries.values()
+			.iterator();
+		while (size > capacity && iterator.hasNext()) {
+			size -= iterator.next().data.length;
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	private static class Cached {
+
+		final long lastModified;
+		final byte[] data;
+
+		Cached(long lastModified, byte[] data) {
+			this.lastModified = lastModified;
+			this.data = data;
+		}
+
+	}
+
+}
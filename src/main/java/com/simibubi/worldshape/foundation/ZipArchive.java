@@ -0,0 +1,303 @@
+package com.simibubi.worldshape.foundation;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import javax.annotation.Nullable;
+
+import com.simibubi.worldshape.Worldshape;
+
+/**
+ * Read-only view of a zip file. The central directory is parsed once when
+ * opening, entry data is then read straight from a memory mapping of the
+ * archive.
+ * <br>
+ * Archives are shared per path: every {@link #acquire} has to be paired with a
+ * {@link #release}, the mapping is dropped once the last user released it, so
+ * the file can be replaced while the game runs.
+ */
+public class ZipArchive {
+
+	private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+	private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+	private static final int LOCAL_FILE_HEADER = 0x04034b50;
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+
+	private static final Map<Path, ZipArchive> OPEN = new ConcurrentHashMap<>();
+
+	private final Path path;
+	private final long lastModified;
+	private final ByteBuffer buffer;
+	private final NavigableMap<String, Entry> entries;
+	// Reads hold the read lock, so the mapping is never dropped below them
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private int users;
+	private boolean closed;
+
+	private ZipArchive(Path path, long lastModified, ByteBuffer buffer, NavigableMap<String, Entry> entries) {
+		this.path = path;
+		this.lastModified = lastModified;
+		this.buffer = buffer;
+		this.entries = entries;
+	}
+
+	/**
+	 * The archive at the given path, shared with everyone still using it unless
+	 * the file changed since
+	 */
+	public static ZipArchive acquire(Path path) throws IOException {
+		Path key = path.toAbsolutePath()
+			.normalize();
+		long lastModified = Files.getLastModifiedTime(key)
+			.toMillis();
+		IOException[] error = new IOException[1];
+		ZipArchive archive = OPEN.compute(key, ($, existing) -> {
+			if (existing != null && existing.lastModified == lastModified && existing.retain())
+				return existing;
+			try {
+				ZipArchive opened = open(key);
+				opened.retain();
+				return opened;
+			} catch (IOException e) {
+				error[0] = e;
+				return existing;
+			}
+		});
+		if (error[0] != null)
+			throw error[0];
+		return archive;
+	}
+
+	private boolean retain() {
+		lock.writeLock()
+			.lock();
+		try {
+			if (closed)
+				return false;
+			users++;
+			return true;
+		} finally {
+			lock.writeLock()
+				.unlock();
+		}
+	}
+
+	public void release() {
+		lock.writeLock()
+			.lock();
+		try {
+			if (closed || --users > 0)
+				return;
+			closed = true;
+			unmap(buffer);
+		} finally {
+			lock.writeLock()
+				.unlock();
+		}
+		OPEN.remove(path, this);
+	}
+
+	private static ZipArchive open(Path path) throws IOException {
+		long lastModified = Files.getLastModifiedTime(path)
+			.toMillis();
+		MappedByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new ZipException("Archive too large: " + path);
+			// The mapping stays valid after the channel is closed
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+		return new ZipArchive(path, lastModified, buffer, readCentralDirectory(path, buffer));
+	}
+
+	private static NavigableMap<String, Entry> readCentralDirectory(Path path, ByteBuffer buffer)
+		throws ZipException {
+		int end = findEndOfCentralDirectory(buffer);
+		if (end < 0)
+			throw new ZipException("Not a zip archive: " + path);
+
+		int count = buffer.getShort(end + 10) & 0xffff;
+		long directoryOffset = buffer.getInt(end + 16) & 0xffffffffL;
+		if (count == 0xffff || directoryOffset == 0xffffffffL)
+			throw new ZipException("Zip64 archives are not supported: " + path);
+
+		NavigableMap<String, Entry> entries = new TreeMap<>();
+		int position = (int) directoryOffset;
+		for (int i = 0; i < count; i++) {
+			if (buffer.getInt(position) != CENTRAL_DIRECTORY_HEADER)
+				throw new ZipException("Corrupt central directory in " + path);
+
+			int method = buffer.getShort(position + 10) & 0xffff;
+			long compressedSize = buffer.getInt(position + 20) & 0xffffffffL;
+			long size = buffer.getInt(position + 24) & 0xffffffffL;
+			int nameLength = buffer.getShort(position + 28) & 0xffff;
+			int extraLength = buffer.getShort(position + 30) & 0xffff;
+			int commentLength = buffer.getShort(position + 32) & 0xffff;
+			long headerOffset = buffer.getInt(position + 42) & 0xffffffffL;
+
+			if (compressedSize == 0xffffffffL || size == 0xffffffffL || headerOffset == 0xffffffffL)
+				throw new ZipException("Zip64 archives are not supported: " + path);
+
+			byte[] nameBytes = new byte[nameLength];
+			ByteBuffer view = buffer.duplicate();
+			view.position(position + 46);
+			view.get(nameBytes);
+			String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+			if (!name.endsWith("/"))
+				entries.put(name, new Entry(method, (int) headerOffset, (int) compressedSize, (int) size));
+			position += 46 + nameLength + extraLength + commentLength;
+		}
+
+		return entries;
+	}
+
+	private static int findEndOfCentralDirectory(ByteBuffer buffer) {
+		int minimum = Math.max(0, buffer.limit() - 22 - 0xffff);
+		for (int position = buffer.limit() - 22; position >= minimum; position--)
+			if (buffer.getInt(position) == END_OF_CENTRAL_DIRECTORY)
+				return position;
+		return -1;
+	}
+
+	public NavigableMap<String, Entry> getEntries() {
+		return Collections.unmodifiableNavigableMap(entries);
+	}
+
+	public boolean contains(String name) {
+		return entries.containsKey(name);
+	}
+
+	@Nullable
+	public InputStream open(String name) throws IOException {
+		Entry entry = entries.get(name);
+		return entry == null ? null : new ByteArrayInputStream(read(entry));
+	}
+
+	public byte[] read(Entry entry) throws IOException {
+		lock.readLock()
+			.lock();
+		try {
+			if (closed)
+				throw new ZipException("Archive was released: " + path);
+			return readMapped(entry);
+		} finally {
+			lock.readLock()
+				.unlock();
+		}
+	}
+
+	private byte[] readMapped(Entry entry) throws IOException {
+		if (buffer.getInt(entry.headerOffset) != LOCAL_FILE_HEADER)
+			throw new ZipException("Corrupt local header in " + path);
+
+		int nameLength = buffer.getShort(entry.headerOffset + 26) & 0xffff;
+		int extraLength = buffer.getShort(entry.headerOffset + 28) & 0xffff;
+		ByteBuffer view = buffer.duplicate();
+		view.position(entry.headerOffset + 30 + nameLength + extraLength);
+
+		if (entry.method == STORED) {
+			byte[] data = new byte[entry.size];
+			view.get(data);
+			return data;
+		}
+
+		if (entry.method != DEFLATED)
+			throw new ZipException("Unsupported compression method " + entry.method + " in " + path);
+
+		// Raw inflaters expect one trailing dummy byte after the compressed data
+		byte[] compressed = new byte[entry.compressedSize + 1];
+		view.get(compressed, 0, entry.compressedSize);
+		byte[] data = new byte[entry.size];
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(compressed);
+			int read = 0;
+			while (read < data.length && !inflater.finished()) {
+				int inflated = inflater.inflate(data, read, data.length - read);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					break;
+				read += inflated;
+			}
+			if (read != data.length)
+				throw new ZipException("Truncated entry in " + path);
+		} catch (DataFormatException e) {
+			throw new ZipException("Corrupt entry in " + path + ": " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+		return data;
+	}
+
+	/**
+	 * Mappings are otherwise only dropped by the garbage collector, and keep the
+	 * file locked on Windows until then. Best-effort: if the Java 8 buffer
+	 * cleaner cannot be reached, the mapping is left to the garbage collector.
+	 */
+	private static void unmap(ByteBuffer buffer) {
+		try {
+			Method cleanerMethod = buffer.getClass()
+				.getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null)
+				cleaner.getClass()
+					.getMethod("clean")
+					.invoke(cleaner);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			Worldshape.LOGGER.debug("Could not unmap worldshape archive, leaving it to the garbage collector", e);
+		}
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	public static class Entry {
+
+		final int method;
+		final int headerOffset;
+		final int compressedSize;
+		final int size;
+
+		Entry(int method, int headerOffset, int compressedSize, int size) {
+			this.method = method;
+			this.headerOffset = headerOffset;
+			this.compressedSize = compressedSize;
+			this.size = size;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+	}
+
+}
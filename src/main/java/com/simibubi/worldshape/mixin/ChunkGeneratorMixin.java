@@ -0,0 +1,27 @@
+package com.simibubi.worldshape.mixin;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import com.simibubi.worldshape.structure.DeferredCavePieces;
+
+import net.minecraft.world.gen.ChunkGenerator;
+import net.minecraft.world.gen.WorldGenRegion;
+import net.minecraft.world.gen.feature.structure.StructureManager;
+
+@Mixin(ChunkGenerator.class)
+public class ChunkGeneratorMixin {
+
+    @Inject(method = "applyBiomeDecoration", at = @At("HEAD"))
+    private void startDecoration(WorldGenRegion region, StructureManager structureManager, CallbackInfo callback) {
+        DeferredCavePieces.onDecorationStart(region);
+    }
+
+    @Inject(method = "applyBiomeDecoration", at = @At("TAIL"))
+    private void finishDecoration(WorldGenRegion region, StructureManager structureManager, CallbackInfo callback) {
+        DeferredCavePieces.onDecorationEnd();
+    }
+
+}
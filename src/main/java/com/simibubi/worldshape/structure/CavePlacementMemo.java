@@ -0,0 +1,61 @@
+package com.simibubi.worldshape.structure;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+import com.simibubi.worldshape.structure.WStructureProfiler.Counter;
+
+import net.minecraft.world.ISeedReader;
+
+/**
+ * Resolved heights of the cave types on the chunk currently decorated by this
+ * thread. A type checked by another one for collision is not searched again
+ * once its own feature fires, and every type sees the same result for it, no
+ * matter which feature asked first.
+ */
+public class CavePlacementMemo {
+
+	public static final int UNKNOWN = Integer.MIN_VALUE + 1;
+	private static final ThreadLocal<CavePlacementMemo> MEMO = ThreadLocal.withInitial(CavePlacementMemo::new);
+
+	private WeakReference<ISeedReader> reader = new WeakReference<>(null);
+	private int x;
+	private int z;
+	private int[] heights = new int[0];
+
+	/**
+	 * The memo of the given decoration region and chunk origin, emptied if this
+	 * thread last worked on a different one
+	 */
+	public static CavePlacementMemo of(ISeedReader reader, int x, int z) {
+		CavePlacementMemo memo = MEMO.get();
+		if (memo.reader.get() != reader || memo.x != x || memo.z != z)
+			memo.reset(reader, x, z);
+		return memo;
+	}
+
+	/**
+	 * The resolved height, {@link WStructurePlacement#NO_Y} if rejected, or
+	 * {@link #UNKNOWN} if not searched yet
+	 */
+	public int get(WStructureType type) {
+		int height = heights[type.index];
+		WStructureProfiler.increment(height == UNKNOWN ? Counter.CAVE_MEMO_MISSES : Counter.CAVE_MEMO_HITS);
+		return height;
+	}
+
+	public void put(WStructureType type, int height) {
+		heights[type.index] = height;
+	}
+
+	private void reset(ISeedReader reader, int x, int z) {
+		this.reader = new WeakReference<>(reader);
+		this.x = x;
+		this.z = z;
+		int types = WStructureRegistry.CUSTOM_TYPES.size();
+		if (heights.length != types)
+			heights = new int[types];
+		Arrays.fill(heights, UNKNOWN);
+	}
+
+}
@@ -0,0 +1,207 @@
+package com.simibubi.worldshape.structure;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+import com.simibubi.worldshape.structure.SectionColumn.Contents;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.world.IBlockReader;
+
+/**
+ * Run-length encoding of a block column as air, cave air, dry and fluid
+ * intervals. Sections are encoded the first time a search reaches them and
+ * kept per column and reader, so shelf searches of every type with their own
+ * bounds and spacing share one pass over the blocks. Blocks placed in the
+ * column afterwards are not seen by the cached runs.
+ */
+public class ColumnRuns {
+
+	public static final int AIR = 0;
+	public static final int CAVE_AIR = 1;
+	public static final int DRY = 2;
+	public static final int FLUID = 3;
+
+	private static final BlockState AIR_STATE = Blocks.AIR.defaultBlockState();
+	private static final BlockState CAVE_AIR_STATE = Blocks.CAVE_AIR.defaultBlockState();
+	private static final Predicate<BlockState> IS_AIR = state -> state == AIR_STATE;
+	private static final Predicate<BlockState> IS_NOT_AIR = state -> state != AIR_STATE;
+
+	private static final int SLOTS = 16;
+	private static final ThreadLocal<ColumnRuns[]> RUNS = ThreadLocal.withInitial(() -> {
+		ColumnRuns[] runs = new ColumnRuns[SLOTS];
+		for (int i = 0; i < SLOTS; i++)
+			runs[i] = new ColumnRuns();
+		return runs;
+	});
+
+	private final SectionColumn blocks = new SectionColumn();
+	private WeakReference<IBlockReader> reader = new WeakReference<>(null);
+	private int x;
+	private int z;
+	private int height;
+	// Whatever the reader returns below and above the column
+	private int below;
+	private int above;
+
+	// Runs of section s are at s * 16 up to s * 16 + counts[s], a run reaching
+	// past its section continues in the next one. Sections not encoded yet have
+	// no runs.
+	private int[] starts = new int[0];
+	private int[] kinds = new int[0];
+	private int[] counts = new int[0];
+
+	/**
+	 * The runs of the given column, call {@link #release()} once the search is
+	 * done
+	 */
+	public static ColumnRuns of(IBlockReader reader, int x, int z) {
+		ColumnRuns columnRuns = RUNS.get()[((x >> 4) * 31 + (z >> 4)) & (SLOTS - 1)];
+		columnRuns.blocks.set(reader, x, z);
+		if (columnRuns.reader.get() != reader || columnRuns.x != x || columnRuns.z != z)
+			columnRuns.reset(reader, x, z);
+		return columnRuns;
+	}
+
+	/**
+	 * Lets go of the reader, the runs encoded so far stay cached
+	 */
+	public void release() {
+		blocks.clear();
+	}
+
+	public static int kindOf(BlockState state) {
+		if (state == AIR_STATE)
+			return AIR;
+		if (state == CAVE_AIR_STATE)
+			return CAVE_AIR;
+		return state.getFluidState()
+			.isEmpty() ? DRY : FLUID;
+	}
+
+	private void reset(IBlockReader reader, int x, int z) {
+		if (this.reader.get() != reader)
+			this.reader = new WeakReference<>(reader);
+		this.x = x;
+		this.z = z;
+		height = reader.getMaxBuildHeight();
+
+		int sections = (height + 15) >> 4;
+		if (counts.length != sections) {
+			starts = new int[sections * 16];
+			kinds = new int[sections * 16];
+			counts = new int[sections];
+		} else
+			Arrays.fill(counts, 0);
+
+		below = kindOf(blocks.getBlockState(-1));
+		above = kindOf(blocks.getBlockState(height));
+	}
+
+	private void encode(int section) {
+		if (counts[section] != 0)
+			return;
+
+		int base = section << 4;
+		if (blocks.test(base, AIR_STATE, IS_AIR, IS_NOT_AIR) == Contents.ONLY) {
+			starts[base] = base;
+			kinds[base] = AIR;
+			counts[section] = 1;
+			return;
+		}
+
+		int count = 0;
+		for (int y = base; y < Math.min(base + 16, height); y++) {
+			int kind = kindOf(blocks.getBlockState(y));
+			if (count > 0 && kinds[base + count - 1] == kind)
+				continue;
+			starts[base + count] = y;
+			kinds[base + count] = kind;
+			count++;
+		}
+		counts[section] = count;
+	}
+
+	/**
+	 * Index of the run containing y, in a column y
+	 */
+	private int indexOf(int y) {
+		int section = y >> 4;
+		encode(section);
+		int index = (section << 4) + counts[section] - 1;
+		while (starts[index] > y)
+			index--;
+		return index;
+	}
+
+	public int getKind(int y) {
+		if (y < 0)
+			return below;
+		if (y >= height)
+			return above;
+		return kinds[indexOf(y)];
+	}
+
+	/**
+	 * First y of the run containing y, {@link Integer#MIN_VALUE} if it reaches
+	 * below the column
+	 */
+	public int getStart(int y) {
+		int kind = getKind(y);
+		if (y < 0)
+			return Integer.MIN_VALUE;
+		if (y >= height) {
+			if (getKind(height - 1) != kind)
+				return height;
+			y = height - 1;
+		}
+
+		int index = indexOf(y);
+		int section = y >> 4;
+		if (index > section << 4)
+			return starts[index];
+
+		for (section--; section >= 0; section--) {
+			encode(section);
+			int last = (section << 4) + counts[section] - 1;
+			if (kinds[last] != kind)
+				return (section + 1) << 4;
+			if (last > section << 4)
+				return starts[last];
+		}
+		return below == kind ? Integer.MIN_VALUE : 0;
+	}
+
+	/**
+	 * Last y of the run containing y, inclusive, {@link Integer#MAX_VALUE} if it
+	 * reaches above the column
+	 */
+	public int getEnd(int y) {
+		int kind = getKind(y);
+		if (y >= height)
+			return Integer.MAX_VALUE;
+		if (y < 0) {
+			if (getKind(0) != kind)
+				return -1;
+			y = 0;
+		}
+
+		int index = indexOf(y);
+		int section = y >> 4;
+		if (index + 1 < (section << 4) + counts[section])
+			return starts[index + 1] - 1;
+
+		for (section++; section < counts.length; section++) {
+			encode(section);
+			int first = section << 4;
+			if (kinds[first] != kind)
+				return first - 1;
+			if (counts[section] > 1)
+				return starts[first + 1] - 1;
+		}
+		return above == kind ? Integer.MAX_VALUE : height - 1;
+	}
+
+}
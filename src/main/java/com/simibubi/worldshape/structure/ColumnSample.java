@@ -0,0 +1,75 @@
+package com.simibubi.worldshape.structure;
+
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.gen.ChunkGenerator;
+import net.minecraft.world.gen.Heightmap;
+
+/**
+ * Noise samples of the column at a chunk origin, computed on first access.
+ * Every worldshape type evaluating the same chunk on a worldgen thread, both
+ * when checking and generating structure starts and when placing cave
+ * features, shares one sample instead of re-running the noise generator.
+ */
+public class ColumnSample {
+
+	private static final int UNSET = Integer.MIN_VALUE;
+	private static final int SLOTS = 16;
+	private static final ThreadLocal<ColumnSample[]> SAMPLES = ThreadLocal.withInitial(() -> new ColumnSample[SLOTS]);
+
+	private final ChunkGenerator generator;
+	private final int x;
+	private final int z;
+
+	private IBlockReader baseColumn;
+	private int surfaceHeight = UNSET;
+	private int oceanFloorHeight = UNSET;
+
+	private ColumnSample(ChunkGenerator generator, int x, int z) {
+		this.generator = generator;
+		this.x = x;
+		this.z = z;
+	}
+
+	public static ColumnSample of(ChunkGenerator generator, int x, int z) {
+		ColumnSample[] samples = SAMPLES.get();
+		int slot = ((x >> 4) * 31 + (z >> 4)) & (SLOTS - 1);
+		ColumnSample sample = samples[slot];
+		if (sample == null || sample.generator != generator || sample.x != x || sample.z != z)
+			samples[slot] = sample = new ColumnSample(generator, x, z);
+		return sample;
+	}
+
+	public IBlockReader getBaseColumn() {
+		if (baseColumn == null)
+			baseColumn = generator.getBaseColumn(x, z);
+		return baseColumn;
+	}
+
+	/**
+	 * Same as {@link ChunkGenerator#getFirstFreeHeight} on the world surface
+	 */
+	public int getSurfaceHeight() {
+		if (surfaceHeight == UNSET)
+			surfaceHeight = generator.getFirstFreeHeight(x, z, Heightmap.Type.WORLD_SURFACE_WG);
+		return surfaceHeight;
+	}
+
+	public int getOceanFloorHeight() {
+		if (oceanFloorHeight == UNSET)
+			oceanFloorHeight = generator.getBaseHeight(x, z, Heightmap.Type.OCEAN_FLOOR_WG);
+		return oceanFloorHeight;
+	}
+
+	public ChunkGenerator getGenerator() {
+		return generator;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getZ() {
+		return z;
+	}
+
+}
@@ -0,0 +1,211 @@
+package com.simibubi.worldshape.structure;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import com.simibubi.worldshape.Worldshape;
+import com.simibubi.worldshape.WorldshapeConfig;
+import com.simibubi.worldshape.structure.WStructureProfiler.Counter;
+
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraft.nbt.NBTUtil;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MutableBoundingBox;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.ISeedReader;
+import net.minecraft.world.IWorld;
+import net.minecraft.world.chunk.ChunkStatus;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraft.world.gen.GenerationStage.Decoration;
+import net.minecraft.world.gen.WorldGenRegion;
+import net.minecraft.world.gen.feature.structure.IStructurePieceType;
+import net.minecraft.world.gen.feature.structure.StructurePiece;
+import net.minecraft.world.gen.feature.template.TemplateManager;
+import net.minecraftforge.common.util.Constants;
+import net.minecraftforge.event.world.ChunkDataEvent;
+import net.minecraftforge.fml.server.ServerLifecycleHooks;
+
+/**
+ * Parts of clipped cave structures waiting for the proto chunks they reach
+ * into, like vanilla structure starts placing into each of their chunks.
+ * Pending parts stay with their chunk and are saved along with it, the
+ * {@link WCavePiecesFeature} of the stage they belong to places them once the
+ * chunk decorates.
+ */
+public class DeferredCavePieces {
+
+	private static final String TAG = Worldshape.ID + ":cave_pieces";
+
+	// Keyed by the chunk object, pending parts go away with the proto chunk
+	private static final Map<IChunk, DeferredCavePieces> CHUNKS = Collections.synchronizedMap(new WeakHashMap<>());
+	// Region decorating through ChunkGenerator#applyBiomeDecoration on this thread
+	private static final ThreadLocal<WeakReference<WorldGenRegion>> DECORATING =
+		ThreadLocal.withInitial(() -> new WeakReference<>(null));
+
+	// Read when biomes load, only those biomes run the features placing pending parts
+	private static volatile boolean enabled;
+
+	private final Map<Decoration, List<Entry>> pending = new EnumMap<>(Decoration.class);
+	// Stages this chunk has placed already, pieces for them are written right away
+	private final Set<Decoration> placed = EnumSet.noneOf(Decoration.class);
+
+	/**
+	 * Latches the config for the biomes being loaded
+	 */
+	public static boolean updateEnabled() {
+		enabled = WorldshapeConfig.SPEC.isLoaded() && WorldshapeConfig.CLIP_CAVE_STRUCTURES.get();
+		return enabled;
+	}
+
+	/**
+	 * Whether cave structures placed into this reader can be clipped. Generators
+	 * overriding the vanilla decoration without calling it never place the
+	 * pending parts, their structures are placed whole like before.
+	 */
+	public static boolean canClip(ISeedReader reader) {
+		return enabled && DECORATING.get()
+			.get() == reader;
+	}
+
+	/**
+	 * Called before the region's center chunk runs its decoration
+	 */
+	public static void onDecorationStart(WorldGenRegion region) {
+		DECORATING.set(new WeakReference<>(region));
+	}
+
+	/**
+	 * Called after the region's center chunk ran its decoration
+	 */
+	public static void onDecorationEnd() {
+		DECORATING.remove();
+	}
+
+	/**
+	 * Keeps the piece until the given chunk places the stage.
+	 *
+	 * @return false if that chunk has placed the stage already, in which case
+	 *         nothing was kept
+	 */
+	public static boolean defer(IChunk chunk, Decoration stage, StructurePiece piece, ChunkPos structureChunk,
+		BlockPos origin) {
+		if (chunk.getStatus()
+			.isOrAfter(ChunkStatus.FEATURES))
+			return false;
+
+		DeferredCavePieces deferred = CHUNKS.computeIfAbsent(chunk, $ -> new DeferredCavePieces());
+		synchronized (deferred) {
+			if (deferred.placed.contains(stage))
+				return false;
+			deferred.pending.computeIfAbsent(stage, $ -> new ArrayList<>())
+				.add(new Entry(piece, structureChunk, origin));
+		}
+		WStructureProfiler.increment(Counter.CAVE_PIECES_DEFERRED);
+		return true;
+	}
+
+	/**
+	 * Takes the pieces waiting for the chunk's stage, pieces handed to it later
+	 * are no longer kept
+	 */
+	static List<Entry> take(IChunk chunk, Decoration stage) {
+		DeferredCavePieces deferred = CHUNKS.computeIfAbsent(chunk, $ -> new DeferredCavePieces());
+		synchronized (deferred) {
+			deferred.placed.add(stage);
+			List<Entry> entries = deferred.pending.remove(stage);
+			return entries == null ? Collections.emptyList() : entries;
+		}
+	}
+
+	public static MutableBoundingBox getChunkBox(IWorld world, int chunkX, int chunkZ) {
+		int x = chunkX * 16;
+		int z = chunkZ * 16;
+		return new MutableBoundingBox(x, 0, z, x + 15, world.getMaxBuildHeight() - 1, z + 15);
+	}
+
+	public static void onChunkSave(ChunkDataEvent.Save event) {
+		DeferredCavePieces deferred = CHUNKS.get(event.getChunk());
+		if (deferred == null)
+			return;
+
+		ListNBT list = new ListNBT();
+		synchronized (deferred) {
+			deferred.pending.forEach((stage, entries) -> {
+				for (Entry entry : entries)
+					list.add(entry.write(stage));
+			});
+		}
+		if (!list.isEmpty())
+			event.getData()
+				.put(TAG, list);
+	}
+
+	public static void onChunkLoad(ChunkDataEvent.Load event) {
+		if (event.getStatus() != ChunkStatus.Type.PROTOCHUNK)
+			return;
+		CompoundNBT data = event.getData();
+		if (!data.contains(TAG, Constants.NBT.TAG_LIST))
+			return;
+
+		TemplateManager templateManager = ServerLifecycleHooks.getCurrentServer()
+			.getStructureManager();
+		DeferredCavePieces deferred = new DeferredCavePieces();
+		ListNBT list = data.getList(TAG, Constants.NBT.TAG_COMPOUND);
+		for (int i = 0; i < list.size(); i++) {
+			CompoundNBT tag = list.getCompound(i);
+			Decoration stage = Decoration.valueOf(tag.getString("Stage"));
+			CompoundNBT pieceTag = tag.getCompound("Piece");
+			IStructurePieceType type = Registry.STRUCTURE_PIECE.get(new ResourceLocation(pieceTag.getString("id")
+				.toLowerCase(Locale.ROOT)));
+			if (type == null) {
+				Worldshape.LOGGER.warn("Dropping pending cave structure piece of unknown type {} in chunk {}",
+					pieceTag.getString("id"), event.getChunk()
+						.getPos());
+				continue;
+			}
+
+			StructurePiece piece = type.load(templateManager, pieceTag);
+			ChunkPos structureChunk = new ChunkPos(tag.getInt("ChunkX"), tag.getInt("ChunkZ"));
+			BlockPos origin = NBTUtil.readBlockPos(tag.getCompound("Origin"));
+			deferred.pending.computeIfAbsent(stage, $ -> new ArrayList<>())
+				.add(new Entry(piece, structureChunk, origin));
+		}
+		CHUNKS.put(event.getChunk(), deferred);
+	}
+
+	static class Entry {
+
+		final StructurePiece piece;
+		final ChunkPos structureChunk;
+		final BlockPos origin;
+
+		Entry(StructurePiece piece, ChunkPos structureChunk, BlockPos origin) {
+			this.piece = piece;
+			this.structureChunk = structureChunk;
+			this.origin = origin;
+		}
+
+		CompoundNBT write(Decoration stage) {
+			CompoundNBT tag = new CompoundNBT();
+			tag.putString("Stage", stage.name());
+			tag.putInt("ChunkX", structureChunk.x);
+			tag.putInt("ChunkZ", structureChunk.z);
+			tag.put("Origin", NBTUtil.writeBlockPos(origin));
+			tag.put("Piece", piece.createTag());
+			return tag;
+		}
+
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.simibubi.worldshape.structure;
+
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraft.world.gen.WorldGenRegion;
+
+/**
+ * Block column of a chunk read straight from its sections, while decorating or
+ * when reading a chunk itself. Whole sections can be tested against a state
+ * through their palette. Other readers, like the sampled base column, fall
+ * back to single block lookups.
+ */
+public class SectionColumn {
+
+	public enum Contents {
+		ONLY, NONE, MIXED
+	}
+
+	private static final BlockState EMPTY = Blocks.AIR.defaultBlockState();
+
+	private IBlockReader reader;
+	@Nullable
+	private ChunkSection[] sections;
+	private final BlockPos.Mutable pos = new BlockPos.Mutable();
+
+	/**
+	 * Points this column at another reader and position, so one instance can be
+	 * kept around for a thread
+	 */
+	public SectionColumn set(IBlockReader reader, int x, int z) {
+		this.reader = reader;
+		this.pos.set(x, 0, z);
+		if (reader instanceof WorldGenRegion)
+			this.sections = ((WorldGenRegion) reader).getChunk(x >> 4, z >> 4)
+				.getSections();
+		else if (reader instanceof IChunk)
+			this.sections = ((IChunk) reader).getSections();
+		else
+			this.sections = null;
+		return this;
+	}
+
+	/**
+	 * Lets go of the reader and its chunk
+	 */
+	public void clear() {
+		reader = null;
+		sections = null;
+	}
+
+	public BlockState getBlockState(int y) {
+		if (!covers(y))
+			return reader.getBlockState(pos.setY(y));
+		ChunkSection section = sections[y >> 4];
+		// Same as the chunk lookups, empty sections read as air
+		if (ChunkSection.isEmpty(section))
+			return EMPTY;
+		return section.getBlockState(pos.getX() & 15, y & 15, pos.getZ() & 15);
+	}
+
+	/**
+	 * Whether the section containing y holds only the given state, none of it, or
+	 * both (or cannot be told without reading every block)
+	 */
+	public Contents test(int y, BlockState state, Predicate<BlockState> isState, Predicate<BlockState> isNotState) {
+		if (!covers(y))
+			return Contents.MIXED;
+		ChunkSection section = sections[y >> 4];
+		if (ChunkSection.isEmpty(section))
+			return state == EMPTY ? Contents.ONLY : Contents.NONE;
+		if (!section.maybeHas(isNotState))
+			return Contents.ONLY;
+		if (!section.maybeHas(isState))
+			return Contents.NONE;
+		return Contents.MIXED;
+	}
+
+	private boolean covers(int y) {
+		return sections != null && y >= 0 && (y >> 4) < sections.length;
+	}
+
+}
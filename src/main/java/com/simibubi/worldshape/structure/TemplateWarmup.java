@@ -0,0 +1,221 @@
+package com.simibubi.worldshape.structure;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.Nullable;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mojang.serialization.JsonOps;
+import com.simibubi.worldshape.Worldshape;
+import com.simibubi.worldshape.structure.WStructureTemplate.SimpleTemplate;
+
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.resources.IResource;
+import net.minecraft.resources.IResourceManager;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.registry.DynamicRegistries;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.world.gen.feature.jigsaw.JigsawPattern;
+import net.minecraft.world.gen.feature.jigsaw.JigsawPiece;
+import net.minecraft.world.gen.feature.template.PlacementSettings;
+import net.minecraft.world.gen.feature.template.Template;
+import net.minecraft.world.gen.feature.template.TemplateManager;
+import net.minecraft.world.storage.FolderName;
+import net.minecraftforge.fml.common.ObfuscationReflectionHelper;
+
+/**
+ * Loads every template the registered structure types can place before the
+ * worlds start generating, so the first structures do not stall worldgen
+ * threads with file reads and nbt decoding. Templates of jigsaw pools are
+ * followed through the pools referenced by their jigsaw blocks.
+ */
+public class TemplateWarmup {
+
+	private static final String STRUCTURE_REPOSITORY = "field_186240_a";
+
+	private final MinecraftServer server;
+	private final DynamicRegistries registries;
+	private final TemplateManager templateManager;
+	private final Set<ResourceLocation> visitedPools = new HashSet<>();
+	private final Set<ResourceLocation> visitedTemplates = new HashSet<>();
+
+	private TemplateWarmup(MinecraftServer server) {
+		this.server = server;
+		this.registries = server.registryAccess();
+		this.templateManager = server.getStructureManager();
+	}
+
+	public static void run(MinecraftServer server) {
+		new TemplateWarmup(server).run();
+	}
+
+	private void run() {
+		long start = System.nanoTime();
+		Runtime runtime = Runtime.getRuntime();
+		long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+
+		Set<ResourceLocation> pending = new LinkedHashSet<>();
+		for (WStructureType type : WStructureRegistry.CUSTOM_TYPES.values()) {
+			WStructureTemplate template = type.getTemplate();
+			if (template instanceof SimpleTemplate)
+				pending.add(template.templateId);
+			else
+				collectPool(template.templateId, pending);
+		}
+
+		Map<ResourceLocation, Template> loaded = new ConcurrentHashMap<>();
+		ForkJoinPool pool = new ForkJoinPool(runtime.availableProcessors());
+
+		try {
+			while (!pending.isEmpty()) {
+				List<ResourceLocation> batch = new ArrayList<>();
+				for (ResourceLocation id : pending)
+					if (visitedTemplates.add(id) && !hasGeneratedOverride(id))
+						batch.add(id);
+				pending.clear();
+
+				pool.submit(() -> batch.parallelStream()
+					.forEach(id -> {
+						Template template = read(id);
+						if (template != null)
+							loaded.put(id, template);
+					}))
+					.get();
+
+				// Pools reached through jigsaw blocks bring the next batch
+				for (ResourceLocation id : batch) {
+					Template template = loaded.get(id);
+					if (template == null)
+						continue;
+					for (Template.BlockInfo info : template.filterBlocks(BlockPos.ZERO, new PlacementSettings(),
+						Blocks.JIGSAW)) {
+						if (info.nbt == null)
+							continue;
+						ResourceLocation poolId = ResourceLocation.tryParse(info.nbt.getString("pool"));
+						if (poolId != null)
+							collectPool(poolId, pending);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+				.interrupt();
+			return;
+		} catch (ExecutionException e) {
+			Worldshape.LOGGER.warn("Template warm-up failed", e.getCause());
+			return;
+		} finally {
+			pool.shutdown();
+		}
+
+		publish(loaded);
+
+		long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+		Worldshape.LOGGER.info("Warmed up {} structure templates in {}ms, about {}MB of heap", loaded.size(),
+			(System.nanoTime() - start) / 1000000, Math.max(0, usedAfter - usedBefore) / (1024 * 1024));
+	}
+
+	private void collectPool(ResourceLocation poolId, Set<ResourceLocation> templates) {
+		if (!visitedPools.add(poolId))
+			return;
+
+		JigsawPattern pattern = registries.registryOrThrow(Registry.TEMPLATE_POOL_REGISTRY)
+			.get(poolId);
+		if (pattern == null)
+			return;
+
+		for (JigsawPiece element : pattern.getShuffledTemplates(new Random(0)))
+			JigsawPiece.CODEC.encodeStart(JsonOps.INSTANCE, element)
+				.result()
+				.ifPresent(json -> collectLocations(json, templates));
+		collectPool(pattern.getFallback(), templates);
+	}
+
+	/**
+	 * Single and list elements name their templates as "location"
+	 */
+	private static void collectLocations(JsonElement json, Set<ResourceLocation> templates) {
+		if (json.isJsonArray()) {
+			json.getAsJsonArray()
+				.forEach(element -> collectLocations(element, templates));
+			return;
+		}
+		if (!json.isJsonObject())
+			return;
+
+		JsonObject object = json.getAsJsonObject();
+		JsonElement location = object.get("location");
+		if (location != null && location.isJsonPrimitive()) {
+			ResourceLocation id = ResourceLocation.tryParse(location.getAsString());
+			if (id != null)
+				templates.add(id);
+		}
+		object.entrySet()
+			.forEach(entry -> collectLocations(entry.getValue(), templates));
+	}
+
+	/**
+	 * The template manager prefers structures saved into the world folder, these
+	 * are left to it
+	 */
+	private boolean hasGeneratedOverride(ResourceLocation id) {
+		Path generated = server.getWorldPath(FolderName.GENERATED_DIR)
+			.resolve(id.getNamespace())
+			.resolve("structures")
+			.resolve(id.getPath() + ".nbt");
+		return Files.exists(generated);
+	}
+
+	@Nullable
+	private Template read(ResourceLocation id) {
+		IResourceManager resourceManager = server.getResourceManager();
+		ResourceLocation location = new ResourceLocation(id.getNamespace(), "structures/" + id.getPath() + ".nbt");
+		try (IResource resource = resourceManager.getResource(location);
+			InputStream stream = resource.getInputStream()) {
+			return templateManager.readStructure(CompressedStreamTools.readCompressed(stream));
+		} catch (Exception e) {
+			Worldshape.LOGGER.warn("Could not warm up structure template {}", id, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Hands the decoded templates to the template manager. If its cache cannot be
+	 * reached, the templates are loaded again through it, one by one.
+	 */
+	private void publish(Map<ResourceLocation, Template> loaded) {
+		Map<ResourceLocation, Template> repository;
+		try {
+			repository = ObfuscationReflectionHelper.getPrivateValue(TemplateManager.class, templateManager,
+				STRUCTURE_REPOSITORY);
+		} catch (Exception e) {
+			repository = null;
+		}
+
+		if (repository == null) {
+			loaded.keySet()
+				.forEach(templateManager::getOrCreate);
+			return;
+		}
+
+		for (Map.Entry<ResourceLocation, Template> entry : loaded.entrySet())
+			repository.putIfAbsent(entry.getKey(), entry.getValue());
+	}
+
+}
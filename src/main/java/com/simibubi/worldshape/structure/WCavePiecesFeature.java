@@ -0,0 +1,53 @@
+package com.simibubi.worldshape.structure;
+
+import java.util.List;
+import java.util.Random;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MutableBoundingBox;
+import net.minecraft.world.ISeedReader;
+import net.minecraft.world.gen.ChunkGenerator;
+import net.minecraft.world.gen.GenerationStage.Decoration;
+import net.minecraft.world.gen.feature.Feature;
+import net.minecraft.world.gen.feature.NoFeatureConfig;
+import net.minecraft.world.gen.feature.structure.StructureManager;
+import net.minecraft.world.server.ServerWorld;
+
+/**
+ * Places the parts of clipped cave structures that were handed to this chunk,
+ * in the decoration stage their structure was placed in. Added to every biome,
+ * since structures reach into chunks of other biomes.
+ */
+public class WCavePiecesFeature extends Feature<NoFeatureConfig> {
+
+	private final Decoration stage;
+
+	public WCavePiecesFeature(Decoration stage) {
+		super(NoFeatureConfig.CODEC);
+		this.stage = stage;
+	}
+
+	@Override
+	public boolean place(ISeedReader reader, ChunkGenerator chunkGenerator, Random random, BlockPos pos,
+		NoFeatureConfig config) {
+
+		ServerWorld level = reader.getLevel();
+		if (level == null)
+			return false;
+
+		int chunkX = pos.getX() >> 4;
+		int chunkZ = pos.getZ() >> 4;
+		List<DeferredCavePieces.Entry> entries = DeferredCavePieces.take(reader.getChunk(chunkX, chunkZ), stage);
+		if (entries.isEmpty())
+			return false;
+
+		StructureManager structureManager = level.structureFeatureManager();
+		MutableBoundingBox chunkBox = DeferredCavePieces.getChunkBox(reader, chunkX, chunkZ);
+		for (DeferredCavePieces.Entry entry : entries)
+			entry.piece.postProcess(reader, structureManager, chunkGenerator, random, chunkBox, entry.structureChunk,
+				entry.origin);
+
+		return true;
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.simibubi.worldshape.structure;
+
+import java.util.List;
+import java.util.Random;
+
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.SharedSeedRandom;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.ISeedReader;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.gen.ChunkGenerator;
+import net.minecraft.world.gen.GenerationStage.Decoration;
+import net.minecraft.world.gen.feature.Feature;
+import net.minecraft.world.gen.feature.NoFeatureConfig;
+import net.minecraft.world.server.ServerWorld;
+
+/**
+ * Places every cave type of one decoration stage in a single pass, instead of
+ * running one feature per type on each chunk. Candidates are narrowed down by
+ * their spacing grid first; only types passing it sample the column and build
+ * their jigsaw pieces.
+ */
+public class WCaveStructureDispatcher extends Feature<NoFeatureConfig> {
+
+	private Decoration stage;
+
+	public WCaveStructureDispatcher(Decoration stage) {
+		super(NoFeatureConfig.CODEC);
+		this.stage = stage;
+	}
+
+	@Override
+	public boolean place(ISeedReader reader, ChunkGenerator chunkGenerator, Random random, BlockPos pos,
+		NoFeatureConfig config) {
+
+		int x = pos.getX();
+		int z = pos.getZ();
+
+		ServerWorld level = reader.getLevel();
+		if (level == null)
+			return false;
+
+		List<WStructureType> types = WStructureRegistry.getCaveTypes(stage);
+		if (types.isEmpty())
+			return false;
+
+		ResourceLocation currentDim = level.dimension()
+			.location();
+		long seed = reader.getSeed();
+		int chunkX = x / 16;
+		int chunkZ = z / 16;
+
+		// Same biome the decoration pass picked the feature list from
+		Biome biome = chunkGenerator.getBiomeSource()
+			.getNoiseBiome((chunkX << 2) + 2, 2, (chunkZ << 2) + 2);
+		ResourceLocation biomeName = biome.getRegistryName();
+		Biome.Category category = biome.getBiomeCategory();
+
+		ColumnSample sample = null;
+		WorldgenScratch scratch = WorldgenScratch.get();
+		SharedSeedRandom typeRandom = scratch.claimFeatureRandom();
+		long decorationSeed = typeRandom.setDecorationSeed(seed, x, z);
+		boolean placed = false;
+
+		try {
+			for (WStructureType type : types) {
+				WCaveStructureFeature feature = (WCaveStructureFeature) type.registryFeatureObject.get();
+				if (!feature.isFeatureChunk(seed, chunkX, chunkZ))
+					continue;
+				if (!type.canGenerateIn(currentDim))
+					continue;
+				if (!type.canGenerateIn(biomeName, category))
+					continue;
+
+				if (sample == null)
+					sample = ColumnSample.of(chunkGenerator, x, z);
+				int y = feature.determineY(reader, sample);
+				if (y == WStructurePlacement.NO_Y)
+					continue;
+				if (feature.yieldsToOthers(reader, currentDim, sample, pos))
+					continue;
+
+				// Each type gets its own random, independent of the others placed here
+				typeRandom.setFeatureSeed(decorationSeed, type.index, stage.ordinal());
+				placed |= feature.generate(reader, chunkGenerator, level, typeRandom, x, y, z);
+			}
+		} finally {
+			scratch.releaseFeatureRandom(typeRandom);
+		}
+
+		return placed;
+	}
+
+}
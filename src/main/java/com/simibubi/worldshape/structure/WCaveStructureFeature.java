@@ -3,10 +3,10 @@ package com.simibubi.worldshape.structure;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
 import java.util.Random;
 
+import com.simibubi.worldshape.structure.WStructureProfiler.Counter;
+
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.SharedSeedRandom;
 import net.minecraft.util.math.BlockPos;
@@ -16,16 +16,15 @@ import net.minecraft.util.math.vector.Vector3i;
 import net.minecraft.util.registry.DynamicRegistries;
 import net.minecraft.world.ISeedReader;
 import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.IChunk;
 import net.minecraft.world.gen.ChunkGenerator;
-import net.minecraft.world.gen.Heightmap;
+import net.minecraft.world.gen.GenerationStage.Decoration;
 import net.minecraft.world.gen.feature.Feature;
 import net.minecraft.world.gen.feature.NoFeatureConfig;
-import net.minecraft.world.gen.feature.jigsaw.JigsawManager;
 import net.minecraft.world.gen.feature.structure.AbstractVillagePiece;
+import net.minecraft.world.gen.feature.structure.StructureManager;
 import net.minecraft.world.gen.feature.structure.StructurePiece;
-import net.minecraft.world.gen.feature.structure.VillageConfig;
 import net.minecraft.world.gen.feature.template.TemplateManager;
-import net.minecraft.world.gen.settings.StructureSeparationSettings;
 import net.minecraft.world.server.ServerWorld;
 
 public class WCaveStructureFeature extends Feature<NoFeatureConfig> {
@@ -37,18 +36,6 @@ public class WCaveStructureFeature extends Feature<NoFeatureConfig> {
 		this.definition = definition;
 	}
 
-	public static ChunkPos getPotentialFeatureChunk(StructureSeparationSettings settings, long p_236392_2_,
-		SharedSeedRandom random, int chunkX, int chunkZ) {
-		int i = settings.spacing();
-		int j = settings.separation();
-		int k = Math.floorDiv(chunkX, i);
-		int l = Math.floorDiv(chunkZ, i);
-		random.setLargeFeatureWithSalt(p_236392_2_, k, l, settings.salt());
-		int i1 = random.nextInt(i - j);
-		int j1 = random.nextInt(i - j);
-		return new ChunkPos(k * i + i1, l * i + j1);
-	}
-
 	@Override
 	public boolean place(ISeedReader reader, ChunkGenerator chunkGenerator, Random random, BlockPos pos,
 		NoFeatureConfig config) {
@@ -65,56 +52,88 @@ public class WCaveStructureFeature extends Feature<NoFeatureConfig> {
 		if (!definition.canGenerateIn(currentDim))
 			return false;
 
-		int chunkX = x / 16;
-		int chunkZ = z / 16;
-		SharedSeedRandom seedRandom = new SharedSeedRandom();
-		long seed = reader.getSeed();
-		ChunkPos featureChunk =
-			getPotentialFeatureChunk(definition.separationSettings, seed, seedRandom, chunkX, chunkZ);
-		if (featureChunk.x != chunkX || featureChunk.z != chunkZ)
+		if (!isFeatureChunk(reader.getSeed(), x / 16, z / 16))
 			return false;
 
-		WStructureTemplate template = definition.getTemplate();
-		WStructurePlacement placement = definition.getPlacement();
+		ColumnSample sample = ColumnSample.of(chunkGenerator, x, z);
+		int y = determineY(reader, sample);
+		if (y == WStructurePlacement.NO_Y)
+			return false;
 
-		DynamicRegistries dynamicRegistryManager = level.registryAccess();
-		TemplateManager structureManager = level.getStructureManager();
-		VillageConfig jigsawConfig = new VillageConfig(template.create(dynamicRegistryManager), definition.getTemplate()
-			.getMaxDepth());
+		if (yieldsToOthers(reader, currentDim, sample, pos))
+			return false;
 
-		int surface = chunkGenerator.getFirstFreeHeight(x, z, Heightmap.Type.WORLD_SURFACE_WG);
-		Optional<Integer> determineY = placement.determineY(chunkGenerator, reader, seedRandom, x, z, surface);
-		if (!determineY.isPresent())
+		return generate(reader, chunkGenerator, level, random, x, y, z);
+	}
+
+	boolean isFeatureChunk(long seed, int chunkX, int chunkZ) {
+		return WStructureGrid.isFeatureChunk(definition.separationSettings, seed, WorldgenScratch.get().gridRandom,
+			chunkX, chunkZ);
+	}
+
+	/**
+	 * Resolved once per type and chunk, see {@link CavePlacementMemo}. The search
+	 * uses blocks of the region as they are when the first feature asks.
+	 */
+	int determineY(ISeedReader reader, ColumnSample sample) {
+		CavePlacementMemo memo = CavePlacementMemo.of(reader, sample.getX(), sample.getZ());
+		int y = memo.get(definition);
+		if (y != CavePlacementMemo.UNKNOWN)
+			return y;
+
+		SharedSeedRandom random = WorldgenScratch.get().placementRandom;
+		WStructureGrid.seedPlacementRandom(definition.separationSettings, reader.getSeed(), random, sample.getX() >> 4,
+			sample.getZ() >> 4);
+		y = definition.getPlacement()
+			.resolveY(sample, reader, random, sample.getSurfaceHeight());
+		memo.put(definition, y);
+		return y;
+	}
+
+	/**
+	 * True if a lower priority cave type would also generate in this chunk
+	 */
+	boolean yieldsToOthers(ISeedReader reader, ResourceLocation currentDim, ColumnSample sample, BlockPos pos) {
+		if (!definition.shouldAvoidOthers())
 			return false;
 
-		if (definition.shouldAvoidOthers()) {
-			List<ResourceLocation> structures = WStructureRegistry.COLLISION_CAVE;
-			Map<ResourceLocation, WStructureType> types = WStructureRegistry.CUSTOM_TYPES;
-
-			for (int i = structures.indexOf(definition.getId()) + 1; i < structures.size(); i++) {
-				WStructureType wStructureType = types.get(structures.get(i));
-				if (!wStructureType.canGenerateIn(currentDim))
-					continue;
-				Biome biome = reader.getBiome(pos);
-				if (!wStructureType.canGenerateIn(biome.getRegistryName(), biome.getBiomeCategory()))
-					continue;
-
-				SharedSeedRandom seedRandomOther = new SharedSeedRandom();
-				ChunkPos potentialFeatureChunk =
-					getPotentialFeatureChunk(wStructureType.separationSettings, seed, seedRandomOther, chunkX, chunkZ);
-				if (potentialFeatureChunk.x != chunkX || potentialFeatureChunk.z != chunkZ)
-					continue;
-				if (wStructureType.getPlacement()
-					.determineY(chunkGenerator, reader, seedRandom, x, z, surface)
-					.isPresent())
-					return false;
-			}
+		Biome biome = reader.getBiome(pos);
+		ResourceLocation biomeName = biome.getRegistryName();
+		Biome.Category category = biome.getBiomeCategory();
+		long seed = reader.getSeed();
+		int chunkX = sample.getX() / 16;
+		int chunkZ = sample.getZ() / 16;
+
+		for (WStructureType wStructureType : definition.yieldsTo) {
+			if (!wStructureType.canGenerateIn(currentDim))
+				continue;
+			if (!wStructureType.canGenerateIn(biomeName, category))
+				continue;
+
+			WCaveStructureFeature other = (WCaveStructureFeature) wStructureType.registryFeatureObject.get();
+			if (!other.isFeatureChunk(seed, chunkX, chunkZ))
+				continue;
+			if (other.determineY(reader, sample) != WStructurePlacement.NO_Y)
+				return true;
 		}
 
+		return false;
+	}
+
+	boolean generate(ISeedReader reader, ChunkGenerator chunkGenerator, ServerWorld level, Random random, int x,
+		int y, int z) {
+		WStructurePlacement placement = definition.getPlacement();
+
+		DynamicRegistries dynamicRegistryManager = level.registryAccess();
+		TemplateManager structureManager = level.getStructureManager();
+
 		List<StructurePiece> pieces = new ArrayList<>();
-		BlockPos centerPos = new BlockPos(x, determineY.get() + placement.getSurfaceOffset(), z);
-		JigsawManager.addPieces(dynamicRegistryManager, jigsawConfig, AbstractVillagePiece::new, chunkGenerator,
-			structureManager, centerPos, pieces, random, false, false);
+		BlockPos centerPos = new BlockPos(x, y + placement.getSurfaceOffset(), z);
+		WStructureAssembler.addPieces(definition.getTemplate(), dynamicRegistryManager, AbstractVillagePiece::new,
+			chunkGenerator, structureManager, centerPos, pieces, random, false, false);
+
+		if (pieces.isEmpty())
+			return false;
 
 		Vector3i structureCenter = pieces.get(0)
 			.getBoundingBox()
@@ -125,25 +144,77 @@ public class WCaveStructureFeature extends Feature<NoFeatureConfig> {
 		for (StructurePiece structurePiece : pieces)
 			structurePiece.move(xOffset, 0, zOffset);
 
+		// Not a scratch box, pool elements may place other worldshape structures on this thread
 		MutableBoundingBox boundingBox = MutableBoundingBox.getUnknownBox();
 		for (StructurePiece structurepiece : pieces)
 			boundingBox.expand(structurepiece.getBoundingBox());
 
-		if (pieces.isEmpty())
-			return false;
-
 		MutableBoundingBox firstBB = (pieces.get(0)).getBoundingBox();
 		Vector3i vector3i = firstBB.getCenter();
 		BlockPos blockpos = new BlockPos(vector3i.getX(), firstBB.y0, vector3i.getZ());
+		ChunkPos chunkPos = new ChunkPos(blockpos);
+
+		if (DeferredCavePieces.canClip(reader)) {
+			placeClipped(reader, chunkGenerator, level, random, x >> 4, z >> 4, pieces, boundingBox, chunkPos,
+				blockpos);
+			return true;
+		}
 		Iterator<StructurePiece> iterator = pieces.iterator();
 
 		while (iterator.hasNext()) {
 			StructurePiece structurepiece = iterator.next();
 			structurepiece.postProcess(reader, level.structureFeatureManager(), chunkGenerator, random, boundingBox,
-				new ChunkPos(blockpos), blockpos);
+				chunkPos, blockpos);
 		}
 
 		return true;
 	}
 
+	/**
+	 * Places the parts of the pieces inside the decorating chunk and the
+	 * neighbours that decorated already, and hands the rest to the chunks they
+	 * reach into
+	 */
+	private void placeClipped(ISeedReader reader, ChunkGenerator chunkGenerator, ServerWorld level, Random random,
+		int chunkX, int chunkZ, List<StructurePiece> pieces, MutableBoundingBox boundingBox, ChunkPos chunkPos,
+		BlockPos blockpos) {
+		StructureManager structureManager = level.structureFeatureManager();
+		Decoration stage = definition.getPlacement()
+			.getDecorationStage();
+
+		for (int targetX = boundingBox.x0 >> 4; targetX <= boundingBox.x1 >> 4; targetX++) {
+			for (int targetZ = boundingBox.z0 >> 4; targetZ <= boundingBox.z1 >> 4; targetZ++) {
+				boolean current = targetX == chunkX && targetZ == chunkZ;
+				// The region can be read further out, but only its center and direct neighbours written
+				boolean writable = Math.abs(targetX - chunkX) <= 1 && Math.abs(targetZ - chunkZ) <= 1;
+				IChunk target = current || !reader.hasChunk(targetX, targetZ) ? null : reader.getChunk(targetX, targetZ);
+				MutableBoundingBox chunkBox = DeferredCavePieces.getChunkBox(reader, targetX, targetZ);
+
+				for (StructurePiece structurepiece : pieces) {
+					if (!structurepiece.getBoundingBox()
+						.intersects(chunkBox))
+						continue;
+
+					if (!current) {
+						// Only kept for chunks below FEATURES, decorated ones can only be written directly
+						if (target != null
+							&& DeferredCavePieces.defer(target, stage, structurepiece, chunkPos, blockpos))
+							continue;
+						if (target == null || !writable) {
+							WStructureProfiler.increment(Counter.CAVE_PIECES_DROPPED);
+							continue;
+						}
+					}
+
+					structurepiece.postProcess(reader, structureManager, chunkGenerator, random, chunkBox, chunkPos,
+						blockpos);
+				}
+			}
+		}
+	}
+
+	public WStructureType getDefinition() {
+		return definition;
+	}
+
 }
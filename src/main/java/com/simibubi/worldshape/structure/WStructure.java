@@ -1,14 +1,11 @@
 package com.simibubi.worldshape.structure;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-
 import javax.annotation.Nullable;
 
 import org.apache.commons.lang3.mutable.MutableBoolean;
 
 import com.simibubi.worldshape.foundation.Pair;
+import com.simibubi.worldshape.structure.WStructureProfiler.Counter;
 
 import net.minecraft.block.BlockState;
 import net.minecraft.util.ResourceLocation;
@@ -23,15 +20,12 @@ import net.minecraft.world.biome.Biome;
 import net.minecraft.world.biome.provider.BiomeProvider;
 import net.minecraft.world.gen.ChunkGenerator;
 import net.minecraft.world.gen.GenerationStage.Decoration;
-import net.minecraft.world.gen.Heightmap;
 import net.minecraft.world.gen.feature.NoFeatureConfig;
-import net.minecraft.world.gen.feature.jigsaw.JigsawManager;
 import net.minecraft.world.gen.feature.jigsaw.JigsawManager.IPieceFactory;
 import net.minecraft.world.gen.feature.structure.AbstractVillagePiece;
 import net.minecraft.world.gen.feature.structure.Structure;
 import net.minecraft.world.gen.feature.structure.StructurePiece;
 import net.minecraft.world.gen.feature.structure.StructureStart;
-import net.minecraft.world.gen.feature.structure.VillageConfig;
 import net.minecraft.world.gen.feature.template.TemplateManager;
 import net.minecraft.world.gen.settings.StructureSeparationSettings;
 
@@ -55,57 +49,70 @@ public class WStructure extends Structure<NoFeatureConfig> {
 		return WStructureStart::new;
 	}
 
+	/**
+	 * Rejection stages run cheapest first: the spacing grid checks only need the
+	 * seed, noise sampling of the column only happens for chunks passing them.
+	 */
 	@Override
 	protected boolean isFeatureChunk(ChunkGenerator generator, BiomeProvider biomeSource, long seed,
 		SharedSeedRandom random, int chunkX, int chunkZ, Biome biome, ChunkPos chunkPos,
 		NoFeatureConfig featureConfig) {
+		WStructurePlacement placement = definition.getPlacement();
+
+		// Grid checks reseed their own random, so determineY sees the same state as before
+		WorldgenScratch scratch = WorldgenScratch.get();
+		SharedSeedRandom gridRandom = scratch.gridRandom;
+
+		if (definition.shouldAvoidOthers())
+			if (isNearAny(generator, seed, gridRandom, chunkX, chunkZ, biome, 0)) {
+				WStructureProfiler.increment(Counter.START_REJECTED_COLLISION);
+				return false;
+			}
+
+		if (placement.avoidVillages())
+			if (coordsOfNearbyStructure(generator, Structure.VILLAGE, seed, gridRandom, chunkX, chunkZ, 4) != null) {
+				WStructureProfiler.increment(Counter.START_REJECTED_VILLAGE);
+				return false;
+			}
+
 		int x = chunkX * 16;
 		int z = chunkZ * 16;
-		BlockPos centerOfChunk = new BlockPos(x, 0, z);
-		int landHeight = generator.getFirstOccupiedHeight(centerOfChunk.getX(), centerOfChunk.getZ(),
-			Heightmap.Type.WORLD_SURFACE_WG);
-
-		IBlockReader column = generator.getBaseColumn(centerOfChunk.getX(), centerOfChunk.getZ());
-		Optional<Integer> determineY = definition.getPlacement()
-			.determineY(generator, generator.getBaseColumn(x, z), random, x, z, landHeight);
-		if (!determineY.isPresent())
+		ColumnSample sample = ColumnSample.of(generator, x, z);
+		int landHeight = sample.getSurfaceHeight() - 1;
+
+		IBlockReader column = sample.getBaseColumn();
+		int y = placement.resolveY(sample, column, random, landHeight);
+		if (y == WStructurePlacement.NO_Y) {
+			WStructureProfiler.increment(Counter.START_REJECTED_PLACEMENT);
 			return false;
+		}
 
-		BlockState generatedOnBlock = column.getBlockState(centerOfChunk.above(determineY.get()));
+		BlockState generatedOnBlock = column.getBlockState(scratch.pos.set(x, y, z));
 		if (generatedOnBlock.getFluidState()
-			.isEmpty() == definition.getPlacement()
-				.fluidSurface())
+			.isEmpty() == placement.fluidSurface()) {
+			WStructureProfiler.increment(Counter.START_REJECTED_SURFACE);
 			return false;
+		}
 
-		if (definition.shouldAvoidOthers())
-			if (isNearAny(generator, biomeSource, seed, random, chunkX, chunkZ, biome, chunkPos, featureConfig, 0,
-				WStructureRegistry.COLLISION_SURFACE))
-				return false;
-
-		if (!definition.getPlacement()
-			.avoidVillages())
-			return true;
-
-		return coordsOfNearbyStructure(generator, Structure.VILLAGE, seed, random, chunkX, chunkZ, 4) == null;
+		WStructureProfiler.increment(Counter.START_ACCEPTED);
+		return true;
 	}
 
-	private boolean isNearAny(ChunkGenerator generator, BiomeProvider biomeSource, long seed, SharedSeedRandom random,
-		int chunkX, int chunkZ, Biome biome, ChunkPos chunkPos, NoFeatureConfig featureConfig, int radius,
-		List<ResourceLocation> structures) {
-		Map<ResourceLocation, WStructureType> types = WStructureRegistry.CUSTOM_TYPES;
+	private boolean isNearAny(ChunkGenerator generator, long seed, SharedSeedRandom random, int chunkX, int chunkZ,
+		Biome biome, int radius) {
+		WStructureType[] yieldsTo = definition.yieldsTo;
+		if (yieldsTo.length == 0)
+			return false;
 
-		for (int i = structures.indexOf(definition.getId()) + 1; i < structures.size(); i++) {
-			WStructureType wStructureType = types.get(structures.get(i));
-			if (!wStructureType.canGenerateIn(biome.getRegistryName(), biome.getBiomeCategory()))
-				continue;
-			Structure<?> feature = wStructureType.configuredStructureFeature.feature;
-			if (!(feature instanceof WStructure))
-				continue;
-			Pair<Integer, Integer> coords =
-				coordsOfNearbyStructure(generator, feature, seed, random, chunkX, chunkZ, radius);
-			if (coords == null)
+		ResourceLocation biomeName = biome.getRegistryName();
+		Biome.Category category = biome.getBiomeCategory();
+
+		for (WStructureType wStructureType : yieldsTo) {
+			if (!wStructureType.canGenerateIn(biomeName, category))
 				continue;
-			return true;
+			if (coordsOfNearbyStructure(generator, wStructureType.registryStructureObject.get(), seed, random, chunkX,
+				chunkZ, radius) != null)
+				return true;
 		}
 
 		return false;
@@ -119,15 +126,9 @@ public class WStructure extends Structure<NoFeatureConfig> {
 		if (structureseparationsettings == null)
 			return null;
 
-		for (int i = chunkX - radius; i <= chunkX + radius; ++i) {
-			for (int j = chunkZ - radius; j <= chunkZ + radius; ++j) {
-				ChunkPos chunkpos = structure.getPotentialFeatureChunk(structureseparationsettings, seed, random, i, j);
-				if (i == chunkpos.x && j == chunkpos.z)
-					return Pair.of(i, j);
-			}
-		}
-
-		return null;
+		// Worldshape candidates come from the shared grid cache
+		Structure<?> vanilla = structure instanceof WStructure ? null : structure;
+		return WStructureGrid.findNearby(structureseparationsettings, vanilla, seed, random, chunkX, chunkZ, radius);
 	}
 
 	public class WStructureStart extends StructureStart<NoFeatureConfig> {
@@ -143,19 +144,14 @@ public class WStructure extends Structure<NoFeatureConfig> {
 			int x = chunkX * 16;
 			int z = chunkZ * 16;
 
-			WStructureTemplate template = definition.getTemplate();
 			WStructurePlacement placement = definition.getPlacement();
-			VillageConfig jigsawConfig =
-				new VillageConfig(template.create(dynamicRegistryManager), definition.getTemplate()
-					.getMaxDepth());
-
-			int surface = chunkGenerator.getFirstFreeHeight(x, z, Heightmap.Type.WORLD_SURFACE_WG);
-			Optional<Integer> determineY =
-				placement.determineY(chunkGenerator, chunkGenerator.getBaseColumn(x, z), random, x, z, surface);
-			if (!determineY.isPresent())
+
+			ColumnSample sample = ColumnSample.of(chunkGenerator, x, z);
+			int y = placement.resolveY(sample, sample.getBaseColumn(), random, sample.getSurfaceHeight());
+			if (y == WStructurePlacement.NO_Y)
 				return;
 
-			BlockPos centerPos = new BlockPos(x, determineY.get(), z);
+			BlockPos centerPos = new BlockPos(x, y, z);
 			Integer terraformOffset = placement.getTerraformedSurfaceOffset()
 				.orElse(0);
 
@@ -166,8 +162,8 @@ public class WStructure extends Structure<NoFeatureConfig> {
 				return new AbstractVillagePiece(m, j, p, resultDelta, r, bb);
 			};
 
-			JigsawManager.addPieces(dynamicRegistryManager, jigsawConfig, factory, chunkGenerator, templateManagerIn,
-				centerPos, pieces, random, true, false);
+			WStructureAssembler.addPieces(definition.getTemplate(), dynamicRegistryManager, factory, chunkGenerator,
+				templateManagerIn, centerPos, pieces, random, true, false);
 
 			Vector3i structureCenter = pieces.get(0)
 				.getBoundingBox()
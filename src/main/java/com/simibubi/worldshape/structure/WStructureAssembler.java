@@ -0,0 +1,235 @@
+package com.simibubi.worldshape.structure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.simibubi.worldshape.structure.WStructureProfiler.Counter;
+import com.simibubi.worldshape.structure.WStructureTemplate.SimpleTemplate;
+
+import net.minecraft.block.Blocks;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.Rotation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MutableBoundingBox;
+import net.minecraft.util.registry.DynamicRegistries;
+import net.minecraft.world.gen.ChunkGenerator;
+import net.minecraft.world.gen.Heightmap;
+import net.minecraft.world.gen.feature.jigsaw.JigsawJunction;
+import net.minecraft.world.gen.feature.jigsaw.JigsawManager;
+import net.minecraft.world.gen.feature.jigsaw.JigsawManager.IPieceFactory;
+import net.minecraft.world.gen.feature.jigsaw.JigsawPattern;
+import net.minecraft.world.gen.feature.jigsaw.JigsawPattern.PlacementBehaviour;
+import net.minecraft.world.gen.feature.jigsaw.JigsawPiece;
+import net.minecraft.world.gen.feature.structure.AbstractVillagePiece;
+import net.minecraft.world.gen.feature.structure.VillageConfig;
+import net.minecraft.world.gen.feature.template.PlacementSettings;
+import net.minecraft.world.gen.feature.template.TemplateManager;
+
+/**
+ * Builds the pieces of a worldshape structure. Single templates without jigsaw
+ * blocks are placed directly, as the jigsaw assembly would never attach
+ * anything to them; all other templates go through the JigsawManager.
+ */
+public class WStructureAssembler {
+
+	private static final Map<ResourceLocation, Boolean> HAS_JIGSAWS = new ConcurrentHashMap<>();
+	private static final Map<WStructureTemplate, AtomicReferenceArray<Layout>> LAYOUTS = new ConcurrentHashMap<>();
+
+	public static void addPieces(WStructureTemplate template, DynamicRegistries registries, IPieceFactory factory,
+		ChunkGenerator generator, TemplateManager templateManager, BlockPos pos,
+		List<? super AbstractVillagePiece> pieces, Random random, boolean expansionHack, boolean useHeightmap) {
+
+		if (template instanceof SimpleTemplate && !hasJigsaws(template.templateId, templateManager)) {
+			WStructureProfiler.increment(Counter.SINGLE_PLACEMENTS);
+			addSinglePiece(template.getPattern(registries), factory, generator, templateManager, pos, pieces, random,
+				useHeightmap);
+			return;
+		}
+
+		// Surface heights differ with every position, so only fixed heights can be translated
+		if (template.shouldCacheLayout() && !useHeightmap) {
+			addCachedLayout(template, registries, factory, generator, templateManager, pos, pieces, random,
+				expansionHack);
+			return;
+		}
+
+		WStructureProfiler.increment(Counter.JIGSAW_ASSEMBLIES);
+		VillageConfig jigsawConfig = new VillageConfig(template.create(registries), template.getMaxDepth());
+		JigsawManager.addPieces(registries, jigsawConfig, factory, generator, templateManager, pos, pieces, random,
+			expansionHack, useHeightmap);
+	}
+
+	/**
+	 * The start piece of {@link JigsawManager#addPieces}, drawing the same random
+	 * values in the same order
+	 */
+	private static void addSinglePiece(JigsawPattern pattern, IPieceFactory factory, ChunkGenerator generator,
+		TemplateManager templateManager, BlockPos pos, List<? super AbstractVillagePiece> pieces, Random random,
+		boolean useHeightmap) {
+		Rotation rotation = Rotation.getRandom(random);
+		JigsawPiece element = pattern.getRandomTemplate(random);
+		AbstractVillagePiece piece = factory.create(templateManager, element, pos, element.getGroundLevelDelta(),
+			rotation, element.getBoundingBox(templateManager, pos, rotation));
+
+		MutableBoundingBox bb = piece.getBoundingBox();
+		int y = pos.getY();
+		if (useHeightmap)
+			y += generator.getFirstFreeHeight((bb.x1 + bb.x0) / 2, (bb.z1 + bb.z0) / 2, Heightmap.Type.WORLD_SURFACE_WG);
+		piece.move(0, y - (bb.y0 + piece.getGroundLevelDelta()), 0);
+		pieces.add(piece);
+	}
+
+	/**
+	 * Copies the layout assembled earlier for the rotation drawn from the random,
+	 * or assembles and keeps it. A copied layout draws no further random values.
+	 */
+	private static void addCachedLayout(WStructureTemplate template, DynamicRegistries registries,
+		IPieceFactory factory, ChunkGenerator generator, TemplateManager templateManager, BlockPos pos,
+		List<? super AbstractVillagePiece> pieces, Random random, boolean expansionHack) {
+		AtomicReferenceArray<Layout> layouts =
+			LAYOUTS.computeIfAbsent(template, $ -> new AtomicReferenceArray<>(Rotation.values().length));
+		Rotation rotation = Rotation.getRandom(random);
+		Layout layout = layouts.get(rotation.ordinal());
+
+		if (layout != null && layout != Layout.UNCACHEABLE) {
+			WStructureProfiler.increment(Counter.LAYOUT_CACHE_HITS);
+			layout.copyTo(pieces, templateManager, pos);
+			return;
+		}
+
+		// The jigsaw manager draws the rotation again, it has to be the same one
+		WStructureProfiler.increment(Counter.JIGSAW_ASSEMBLIES);
+		int first = pieces.size();
+		VillageConfig jigsawConfig = new VillageConfig(template.create(registries), template.getMaxDepth());
+		JigsawManager.addPieces(registries, jigsawConfig, factory, generator, templateManager, pos, pieces,
+			new ReplayRandom(random, rotation.ordinal()), expansionHack, false);
+
+		if (layout == null)
+			layouts.set(rotation.ordinal(), Layout.of(pieces.subList(first, pieces.size()), templateManager, pos));
+	}
+
+	private static boolean hasJigsaws(ResourceLocation templateId, TemplateManager templateManager) {
+		return HAS_JIGSAWS.computeIfAbsent(templateId, $ -> !templateManager.getOrCreate(templateId)
+			.filterBlocks(BlockPos.ZERO, new PlacementSettings(), Blocks.JIGSAW)
+			.isEmpty());
+	}
+
+	public static void clearCache() {
+		HAS_JIGSAWS.clear();
+		LAYOUTS.clear();
+	}
+
+	/**
+	 * Pieces of one assembled structure, as placed around the position it was
+	 * assembled at
+	 */
+	private static class Layout {
+
+		static final Layout UNCACHEABLE = new Layout(BlockPos.ZERO, Collections.emptyList());
+
+		final BlockPos origin;
+		final List<AbstractVillagePiece> pieces;
+
+		Layout(BlockPos origin, List<AbstractVillagePiece> pieces) {
+			this.origin = origin;
+			this.pieces = pieces;
+		}
+
+		static Layout of(List<?> assembled, TemplateManager templateManager, BlockPos origin) {
+			List<AbstractVillagePiece> pieces = new ArrayList<>(assembled.size());
+			for (Object piece : assembled) {
+				AbstractVillagePiece villagePiece = (AbstractVillagePiece) piece;
+				// Terrain matching pieces follow the surface around them
+				if (villagePiece.getElement()
+					.getProjection() == PlacementBehaviour.TERRAIN_MATCHING)
+					return UNCACHEABLE;
+				pieces.add(copy(villagePiece, templateManager, 0, 0, 0));
+			}
+			return new Layout(origin.immutable(), pieces);
+		}
+
+		void copyTo(List<? super AbstractVillagePiece> target, TemplateManager templateManager, BlockPos pos) {
+			int dx = pos.getX() - origin.getX();
+			int dy = pos.getY() - origin.getY();
+			int dz = pos.getZ() - origin.getZ();
+			for (AbstractVillagePiece piece : pieces)
+				target.add(copy(piece, templateManager, dx, dy, dz));
+		}
+
+		static AbstractVillagePiece copy(AbstractVillagePiece piece, TemplateManager templateManager, int dx, int dy,
+			int dz) {
+			AbstractVillagePiece copy = new AbstractVillagePiece(templateManager, piece.getElement(),
+				piece.getPosition(), piece.getGroundLevelDelta(), piece.getRotation(),
+				new MutableBoundingBox(piece.getBoundingBox()));
+			for (JigsawJunction junction : piece.getJunctions())
+				copy.addJunction(new JigsawJunction(junction.getSourceX() + dx, junction.getSourceGroundY() + dy,
+					junction.getSourceZ() + dz, junction.getDeltaY(), junction.getDestProjection()));
+			copy.move(dx, dy, dz);
+			return copy;
+		}
+
+	}
+
+	/**
+	 * Hands out a value already drawn for the first bounded int, then continues
+	 * with the wrapped random
+	 */
+	private static class ReplayRandom extends Random {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Random random;
+		private int replay;
+
+		ReplayRandom(Random random, int replay) {
+			this.random = random;
+			this.replay = replay;
+		}
+
+		@Override
+		public int nextInt(int bound) {
+			if (replay < 0)
+				return random.nextInt(bound);
+			int value = replay;
+			replay = -1;
+			return value;
+		}
+
+		@Override
+		public int nextInt() {
+			return random.nextInt();
+		}
+
+		@Override
+		public long nextLong() {
+			return random.nextLong();
+		}
+
+		@Override
+		public boolean nextBoolean() {
+			return random.nextBoolean();
+		}
+
+		@Override
+		public float nextFloat() {
+			return random.nextFloat();
+		}
+
+		@Override
+		public double nextDouble() {
+			return random.nextDouble();
+		}
+
+		@Override
+		public double nextGaussian() {
+			return random.nextGaussian();
+		}
+
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.simibubi.worldshape.structure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.biome.Biome;
+
+/**
+ * Lookup of the structure types allowed in a biome, built once from the type
+ * filters instead of testing every type for every loaded biome.
+ */
+public class WStructureBiomeIndex {
+
+	private final List<WStructureType> unfiltered = new ArrayList<>();
+	private final Map<ResourceLocation, List<WStructureType>> byBiome = new HashMap<>();
+	private final Map<String, List<WStructureType>> byCategory = new HashMap<>();
+
+	public WStructureBiomeIndex(Collection<WStructureType> types) {
+		for (WStructureType type : types) {
+			if (type.getBiomes() == null) {
+				unfiltered.add(type);
+				continue;
+			}
+			for (ResourceLocation biome : type.getBiomes())
+				byBiome.computeIfAbsent(biome, $ -> new ArrayList<>())
+					.add(type);
+			for (String category : type.getBiomeCategories())
+				byCategory.computeIfAbsent(category, $ -> new ArrayList<>())
+					.add(type);
+		}
+	}
+
+	/**
+	 * All types that can generate in the given biome, in registration order
+	 */
+	public List<WStructureType> getTypes(ResourceLocation biome, Biome.Category category) {
+		List<WStructureType> forBiome = byBiome.getOrDefault(biome, Collections.emptyList());
+		List<WStructureType> forCategory = byCategory.getOrDefault(category.getName(), Collections.emptyList());
+		if (forBiome.isEmpty() && forCategory.isEmpty())
+			return unfiltered;
+
+		List<WStructureType> matching = new ArrayList<>(unfiltered.size() + forBiome.size() + forCategory.size());
+		matching.addAll(unfiltered);
+		matching.addAll(forBiome);
+		matching.addAll(forCategory);
+		matching.sort(Comparator.comparingInt(type -> type.index));
+
+		// A type listing both the biome and its category is only added once
+		for (int i = matching.size() - 1; i > 0; i--)
+			if (matching.get(i) == matching.get(i - 1))
+				matching.remove(i);
+		return matching;
+	}
+
+}
@@ -0,0 +1,165 @@
+package com.simibubi.worldshape.structure;
+
+import javax.annotation.Nullable;
+
+import com.simibubi.worldshape.foundation.Pair;
+import com.simibubi.worldshape.structure.WStructureProfiler.Counter;
+
+import net.minecraft.util.SharedSeedRandom;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.gen.feature.structure.Structure;
+import net.minecraft.world.gen.settings.StructureSeparationSettings;
+
+/**
+ * Spacing grid math of worldshape structures. Each spacing cell has exactly one
+ * candidate chunk per world seed; candidates are kept in a bounded cache shared
+ * by all worldgen threads, so collision checks of other types and the cave
+ * features re-use them instead of reseeding a random every time.
+ */
+public class WStructureGrid {
+
+	private static final int SEGMENTS = 64;
+	private static final int SEGMENT_SLOTS = 1024;
+	private static final Segment[] CACHE = new Segment[SEGMENTS];
+
+	static {
+		for (int i = 0; i < SEGMENTS; i++)
+			CACHE[i] = new Segment();
+	}
+
+	/**
+	 * Candidate chunk of the spacing cell containing the given chunk, packed with
+	 * {@link ChunkPos#asLong(int, int)}. Unlike the vanilla variant, the random is
+	 * not guaranteed to be reseeded afterwards.
+	 */
+	public static long getPotentialFeatureChunk(StructureSeparationSettings settings, long seed,
+		SharedSeedRandom random, int chunkX, int chunkZ) {
+		int spacing = settings.spacing();
+		int cellX = Math.floorDiv(chunkX, spacing);
+		int cellZ = Math.floorDiv(chunkZ, spacing);
+		long settingsKey = (long) settings.salt() << 32 | (spacing & 0xffffL) << 16 | settings.separation() & 0xffffL;
+		long cellKey = ChunkPos.asLong(cellX, cellZ);
+
+		long hash = mix(seed ^ mix(settingsKey ^ mix(cellKey)));
+		Segment segment = CACHE[(int) (hash >>> 32) & (SEGMENTS - 1)];
+		int slot = (int) hash & (SEGMENT_SLOTS - 1);
+
+		synchronized (segment) {
+			if (segment.filled[slot] && segment.cells[slot] == cellKey && segment.settings[slot] == settingsKey
+				&& segment.seeds[slot] == seed) {
+				WStructureProfiler.increment(Counter.GRID_CACHE_HITS);
+				return segment.chunks[slot];
+			}
+		}
+
+		WStructureProfiler.increment(Counter.GRID_CACHE_MISSES);
+		long chunk = computePotentialFeatureChunk(settings, seed, random, cellX, cellZ);
+
+		synchronized (segment) {
+			segment.filled[slot] = true;
+			segment.seeds[slot] = seed;
+			segment.settings[slot] = settingsKey;
+			segment.cells[slot] = cellKey;
+			segment.chunks[slot] = chunk;
+		}
+
+		return chunk;
+	}
+
+	public static boolean isFeatureChunk(StructureSeparationSettings settings, long seed, SharedSeedRandom random,
+		int chunkX, int chunkZ) {
+		return getPotentialFeatureChunk(settings, seed, random, chunkX, chunkZ) == ChunkPos.asLong(chunkX, chunkZ);
+	}
+
+	/**
+	 * Finds the first chunk within radius that a structure would start in,
+	 * scanning x first, then z. Each spacing cell has at most one candidate, so
+	 * only cells overlapping the search square are evaluated. Vanilla structures
+	 * are asked for their own candidates, worldshape structures pass null.
+	 */
+	@Nullable
+	public static Pair<Integer, Integer> findNearby(StructureSeparationSettings settings, @Nullable Structure<?> vanilla,
+		long seed, SharedSeedRandom random, int chunkX, int chunkZ, int radius) {
+		int spacing = settings.spacing();
+		int minCellX = Math.floorDiv(chunkX - radius, spacing);
+		int maxCellX = Math.floorDiv(chunkX + radius, spacing);
+		int minCellZ = Math.floorDiv(chunkZ - radius, spacing);
+		int maxCellZ = Math.floorDiv(chunkZ + radius, spacing);
+
+		for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+			Pair<Integer, Integer> first = null;
+
+			for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+				int x;
+				int z;
+
+				if (vanilla == null) {
+					long chunkpos = getPotentialFeatureChunk(settings, seed, random, cellX * spacing, cellZ * spacing);
+					x = ChunkPos.getX(chunkpos);
+					z = ChunkPos.getZ(chunkpos);
+				} else {
+					ChunkPos chunkpos =
+						vanilla.getPotentialFeatureChunk(settings, seed, random, cellX * spacing, cellZ * spacing);
+					x = chunkpos.x;
+					z = chunkpos.z;
+				}
+
+				if (Math.abs(x - chunkX) > radius || Math.abs(z - chunkZ) > radius)
+					continue;
+				if (first == null || x < first.getFirst())
+					first = Pair.of(x, z);
+			}
+
+			// Candidates of later cell columns all lie further along x
+			if (first != null)
+				return first;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Leaves the random where finding the candidate of the chunk's spacing cell
+	 * leaves it, whether or not the candidate came from the cache. Placements
+	 * drawing from it afterwards resolve the same heights as without the cache.
+	 */
+	public static void seedPlacementRandom(StructureSeparationSettings settings, long seed, SharedSeedRandom random,
+		int chunkX, int chunkZ) {
+		int spacing = settings.spacing();
+		computePotentialFeatureChunk(settings, seed, random, Math.floorDiv(chunkX, spacing),
+			Math.floorDiv(chunkZ, spacing));
+	}
+
+	private static long computePotentialFeatureChunk(StructureSeparationSettings settings, long seed,
+		SharedSeedRandom random, int cellX, int cellZ) {
+		int spacing = settings.spacing();
+		int separation = settings.separation();
+		random.setLargeFeatureWithSalt(seed, cellX, cellZ, settings.salt());
+		int offsetX = random.nextInt(spacing - separation);
+		int offsetZ = random.nextInt(spacing - separation);
+		return ChunkPos.asLong(cellX * spacing + offsetX, cellZ * spacing + offsetZ);
+	}
+
+	public static double getHitRate() {
+		long hits = WStructureProfiler.get(Counter.GRID_CACHE_HITS);
+		long total = hits + WStructureProfiler.get(Counter.GRID_CACHE_MISSES);
+		return total == 0 ? 0 : hits / (double) total;
+	}
+
+	private static long mix(long value) {
+		value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+		value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return value ^ (value >>> 33);
+	}
+
+	private static class Segment {
+
+		final boolean[] filled = new boolean[SEGMENT_SLOTS];
+		final long[] seeds = new long[SEGMENT_SLOTS];
+		final long[] settings = new long[SEGMENT_SLOTS];
+		final long[] cells = new long[SEGMENT_SLOTS];
+		final long[] chunks = new long[SEGMENT_SLOTS];
+
+	}
+
+}
@@ -1,7 +1,12 @@
 package com.simibubi.worldshape.structure;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Optional;
 
+import javax.annotation.Nullable;
+
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
@@ -11,37 +16,53 @@ import net.minecraft.block.Blocks;
 import net.minecraft.util.JSONUtils;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.SharedSeedRandom;
-import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.BlockPos.Mutable;
 import net.minecraft.world.IBlockReader;
-import net.minecraft.world.gen.ChunkGenerator;
 import net.minecraft.world.gen.GenerationStage.Decoration;
-import net.minecraft.world.gen.Heightmap.Type;
 
 public abstract class WStructurePlacement {
 
+	public static final int NO_Y = Integer.MIN_VALUE;
+
+	String type;
 	int minY;
 	int maxY;
 	int surfaceOffset;
 	boolean needsWater;
 	Optional<Integer> terraform;
-	
+
 	public static WStructurePlacement get(ResourceLocation id, JsonElement json) {
 		if (json.isJsonObject()) {
 			JsonObject jo = json.getAsJsonObject();
-			String type = JSONUtils.getAsString(jo, "type", "");
-			if (type.equals("surface"))
-				return new SurfacePlacement().read(jo);
-			if (type.equals("underground"))
-				return new UndergroundPlacement().read(jo);
-			if (type.equals("nether"))
-				return new NetherPlacement().read(jo);
-			if (type.equals("cave"))
-				return new CavePlacement().read(jo);
+			WStructurePlacement placement = create(JSONUtils.getAsString(jo, "type", ""));
+			if (placement != null)
+				return placement.read(jo);
 		}
 		throw new JsonSyntaxException("Cannot find Structure placement information for " + id);
 	}
 
+	public static WStructurePlacement get(ResourceLocation id, DataInput input) throws IOException {
+		WStructurePlacement placement = create(input.readUTF());
+		if (placement == null)
+			throw new IOException("Cannot find Structure placement information for " + id);
+		return placement.read(input);
+	}
+
+	@Nullable
+	private static WStructurePlacement create(String type) {
+		WStructurePlacement placement = null;
+		if (type.equals("surface"))
+			placement = new SurfacePlacement();
+		if (type.equals("underground"))
+			placement = new UndergroundPlacement();
+		if (type.equals("nether"))
+			placement = new NetherPlacement();
+		if (type.equals("cave"))
+			placement = new CavePlacement();
+		if (placement != null)
+			placement.type = type;
+		return placement;
+	}
+
 	WStructurePlacement read(JsonObject json) {
 		maxY = JSONUtils.getAsInt(json, "maxY", 256);
 		minY = JSONUtils.getAsInt(json, "minY", 0);
@@ -51,6 +72,26 @@ public abstract class WStructurePlacement {
 		return this;
 	}
 
+	WStructurePlacement read(DataInput input) throws IOException {
+		maxY = input.readInt();
+		minY = input.readInt();
+		surfaceOffset = input.readInt();
+		needsWater = input.readBoolean();
+		terraform = input.readBoolean() ? Optional.of(input.readInt()) : Optional.empty();
+		return this;
+	}
+
+	void write(DataOutput output) throws IOException {
+		output.writeUTF(type);
+		output.writeInt(maxY);
+		output.writeInt(minY);
+		output.writeInt(surfaceOffset);
+		output.writeBoolean(needsWater);
+		output.writeBoolean(terraform.isPresent());
+		if (terraform.isPresent())
+			output.writeInt(terraform.get());
+	}
+
 	//
 
 	public boolean isFeaturePlacement() {
@@ -77,22 +118,35 @@ public abstract class WStructurePlacement {
 		return needsWater;
 	}
 
-	public final Optional<Integer> determineY(ChunkGenerator generator, IBlockReader reader, SharedSeedRandom random,
-		int x, int z, int surfaceY) {
-		return determineYInternal(generator, reader, random, x, z, surfaceY).filter(i -> i < maxY && i >= minY);
+	/**
+	 * @param column   noise samples at the chunk origin
+	 * @param reader   blocks to search, either the sampled base column or the
+	 *                 world being decorated
+	 * @param surfaceY the surface height placements should measure from
+	 * @return the height to place at, or {@link #NO_Y}
+	 */
+	public final int resolveY(ColumnSample column, IBlockReader reader, SharedSeedRandom random, int surfaceY) {
+		int y = determineYInternal(column, reader, random, surfaceY);
+		return y != NO_Y && y < maxY && y >= minY ? y : NO_Y;
 	}
 
-	protected abstract Optional<Integer> determineYInternal(ChunkGenerator generator, IBlockReader reader,
-		SharedSeedRandom random, int x, int z, int surfaceY);
+	public final Optional<Integer> determineY(ColumnSample column, IBlockReader reader, SharedSeedRandom random,
+		int surfaceY) {
+		int y = resolveY(column, reader, random, surfaceY);
+		return y == NO_Y ? Optional.empty() : Optional.of(y);
+	}
+
+	protected abstract int determineYInternal(ColumnSample column, IBlockReader reader, SharedSeedRandom random,
+		int surfaceY);
 
 	//
 
 	static class SurfacePlacement extends WStructurePlacement {
 
 		@Override
-		public Optional<Integer> determineYInternal(ChunkGenerator generator, IBlockReader reader,
-			SharedSeedRandom random, int x, int z, int surfaceY) {
-			return Optional.of(surfaceY);
+		public int determineYInternal(ColumnSample column, IBlockReader reader, SharedSeedRandom random,
+			int surfaceY) {
+			return surfaceY;
 		}
 
 		@Override
@@ -117,44 +171,65 @@ public abstract class WStructurePlacement {
 		}
 
 		@Override
-		protected Optional<Integer> determineYInternal(ChunkGenerator generator, IBlockReader reader,
-			SharedSeedRandom random, int x, int z, int surfaceY) {
+		WStructurePlacement read(DataInput input) throws IOException {
+			super.read(input);
+			atCeiling = input.readBoolean();
+			pickHighest = input.readBoolean();
+			minSpace = input.readInt();
+			return this;
+		}
+
+		@Override
+		void write(DataOutput output) throws IOException {
+			super.write(output);
+			output.writeBoolean(atCeiling);
+			output.writeBoolean(pickHighest);
+			output.writeInt(minSpace);
+		}
+
+		@Override
+		protected int determineYInternal(ColumnSample column, IBlockReader reader, SharedSeedRandom random,
+			int surfaceY) {
 			if (surfaceY <= minY)
-				return Optional.empty();
+				return NO_Y;
+
+			ColumnRuns runs = ColumnRuns.of(reader, column.getX(), column.getZ());
+			int y = findShelf(runs, surfaceY);
+			runs.release();
+			return y;
+		}
 
-			BlockPos.Mutable searchPos =
-				new Mutable(x, pickHighest ? Math.min(surfaceY, maxY) - 1 : Math.max(1, minY), z);
+		private int findShelf(ColumnRuns runs, int surfaceY) {
+			int y = pickHighest ? Math.min(surfaceY, maxY) - 1 : Math.max(1, minY);
 			int space = 0;
 			int prevShelf = 0;
 			int direction = pickHighest ? -1 : 1;
-			BlockState airState = getValidAirState();
+			boolean floor = !(atCeiling ^ pickHighest);
+			int airKind = ColumnRuns.kindOf(getValidAirState());
 
-			while ((!pickHighest || searchPos.getY() >= minY) && (pickHighest || searchPos.getY() < maxY)) {
-				int currentY = searchPos.getY();
-				boolean isAir = reader.getBlockState(searchPos) == airState;
+			while ((!pickHighest || y >= minY) && (pickHighest || y < maxY)) {
+				int runEnd = pickHighest ? Math.max(runs.getStart(y), minY) : Math.min(runs.getEnd(y), maxY - 1);
+				int kind = runs.getKind(y);
 
-				if (isAir) {
+				// A shelf is always air, so floors only need to know whether water was asked for
+				if (kind == airKind) {
 					if (space == 0)
-						prevShelf = currentY;
-					space++;
-					if (space >= minSpace && !(atCeiling ^ pickHighest)
-						&& reader.getBlockState(new BlockPos(x, prevShelf, z))
-							.getFluidState()
-							.isEmpty() != needsWater)
-						return Optional.of(prevShelf);
+						prevShelf = y;
+					space += Math.abs(runEnd - y) + 1;
+					if (space >= minSpace && floor && !needsWater)
+						return prevShelf;
 
 				} else {
-					if (space >= minSpace && (atCeiling ^ pickHighest)
-						&& reader.getBlockState(new BlockPos(x, currentY, z))
-							.getFluidState()
-							.isEmpty() != needsWater)
-						return Optional.of(currentY - direction);
+					// Only the first block of a run can end the search, the rest are alike
+					if (space >= minSpace && !floor && (kind == ColumnRuns.FLUID) == needsWater)
+						return y - direction;
 					space = 0;
 				}
-				searchPos.move(0, direction, 0);
+
+				y = runEnd + direction;
 			}
 
-			return Optional.empty();
+			return NO_Y;
 		}
 
 		protected BlockState getValidAirState() {
@@ -195,19 +270,32 @@ public abstract class WStructurePlacement {
 			return this;
 		}
 
+		@Override
+		WStructurePlacement read(DataInput input) throws IOException {
+			super.read(input);
+			minDistanceFromSurface = input.readInt();
+			return this;
+		}
+
+		@Override
+		void write(DataOutput output) throws IOException {
+			super.write(output);
+			output.writeInt(minDistanceFromSurface);
+		}
+
 		@Override
 		public Decoration getDecorationStage() {
 			return Decoration.UNDERGROUND_DECORATION;
 		}
 
 		@Override
-		protected Optional<Integer> determineYInternal(ChunkGenerator generator, IBlockReader reader,
-			SharedSeedRandom random, int x, int z, int surfaceY) {
-			surfaceY = generator.getBaseHeight(x, z, Type.OCEAN_FLOOR_WG);
+		protected int determineYInternal(ColumnSample column, IBlockReader reader, SharedSeedRandom random,
+			int surfaceY) {
+			surfaceY = column.getOceanFloorHeight();
 			int actualMaxY = Math.min(maxY, surfaceY - minDistanceFromSurface);
 			if (actualMaxY < minY)
-				return Optional.empty();
-			return Optional.of(random.nextInt(actualMaxY - minY) + minY);
+				return NO_Y;
+			return random.nextInt(actualMaxY - minY) + minY;
 		}
 
 	}
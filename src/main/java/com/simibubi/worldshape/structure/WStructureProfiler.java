@@ -0,0 +1,108 @@
+package com.simibubi.worldshape.structure;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.simibubi.worldshape.Worldshape;
+
+/**
+ * Wall time and workload of each registry phase worldshape runs while the game
+ * and its worlds start up. Phases running several times (e.g. once per biome)
+ * are summed up. Counters track events on the world generation paths.
+ */
+public class WStructureProfiler {
+
+	public enum Phase {
+		LOAD, REGISTER_CONFIGURED, SETUP_SPACING, POPULATE_BIOMES, DIMENSIONAL_SPACING, RESOLVE_PATTERNS
+	}
+
+	public enum Counter {
+		TERRAFORGED_SKIPS, FLAT_WORLD_SKIPS, GRID_CACHE_HITS, GRID_CACHE_MISSES,
+
+		// Outcome of WStructure.isFeatureChunk, by the stage rejecting the chunk.
+		// Collision and village rejections never sample the column noise
+		START_REJECTED_COLLISION, START_REJECTED_VILLAGE, START_REJECTED_PLACEMENT, START_REJECTED_SURFACE,
+		START_ACCEPTED,
+
+		CAVE_MEMO_HITS, CAVE_MEMO_MISSES, PATTERN_CACHE_HITS, PATTERN_CACHE_MISSES,
+
+		// Structures placed as one template, and structures assembled by the JigsawManager
+		SINGLE_PLACEMENTS, JIGSAW_ASSEMBLIES, LAYOUT_CACHE_HITS,
+
+		// Parts of clipped cave structures handed to later chunks, or lost to chunks out of reach
+		CAVE_PIECES_DEFERRED, CAVE_PIECES_DROPPED
+	}
+
+	private static final Map<Phase, PhaseStats> STATS = new EnumMap<>(Phase.class);
+	private static final Map<Counter, LongAdder> COUNTERS = new EnumMap<>(Counter.class);
+
+	static {
+		for (Phase phase : Phase.values())
+			STATS.put(phase, new PhaseStats());
+		for (Counter counter : Counter.values())
+			COUNTERS.put(counter, new LongAdder());
+	}
+
+	public static void record(Phase phase, long startNanos, int typesProcessed, int mapRebuilds) {
+		PhaseStats stats = STATS.get(phase);
+		stats.nanos.addAndGet(System.nanoTime() - startNanos);
+		stats.invocations.incrementAndGet();
+		stats.typesProcessed.addAndGet(typesProcessed);
+		stats.mapRebuilds.addAndGet(mapRebuilds);
+	}
+
+	public static PhaseStats get(Phase phase) {
+		return STATS.get(phase);
+	}
+
+	public static void increment(Counter counter) {
+		COUNTERS.get(counter)
+			.increment();
+	}
+
+	public static long get(Counter counter) {
+		return COUNTERS.get(counter)
+			.sum();
+	}
+
+	public static void logSummary() {
+		Worldshape.LOGGER.info("Worldshape registry phases ({} structure types):", WStructureRegistry.CUSTOM_TYPES.size());
+		for (Phase phase : Phase.values()) {
+			PhaseStats stats = STATS.get(phase);
+			Worldshape.LOGGER.info("  {}: {}ms over {} runs, {} types processed, {} map rebuilds", phase,
+				stats.getNanos() / 1000000, stats.getInvocations(), stats.getTypesProcessed(),
+				stats.getMapRebuilds());
+		}
+		for (Counter counter : Counter.values())
+			if (get(counter) > 0)
+				Worldshape.LOGGER.info("  {}: {}", counter, get(counter));
+	}
+
+	public static class PhaseStats {
+
+		private final AtomicLong nanos = new AtomicLong();
+		private final AtomicLong invocations = new AtomicLong();
+		private final AtomicLong typesProcessed = new AtomicLong();
+		private final AtomicLong mapRebuilds = new AtomicLong();
+
+		public long getNanos() {
+			return nanos.get();
+		}
+
+		public long getInvocations() {
+			return invocations.get();
+		}
+
+		public long getTypesProcessed() {
+			return typesProcessed.get();
+		}
+
+		public long getMapRebuilds() {
+			return mapRebuilds.get();
+		}
+
+	}
+
+}
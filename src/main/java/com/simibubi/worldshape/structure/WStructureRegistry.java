@@ -1,21 +1,45 @@
 package com.simibubi.worldshape.structure;
 
-import java.lang.reflect.Method;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
 import com.mojang.serialization.Codec;
 import com.simibubi.worldshape.Worldshape;
+import com.simibubi.worldshape.WorldshapeConfig;
 import com.simibubi.worldshape.foundation.FilesHelper;
 import com.simibubi.worldshape.foundation.Lang;
+import com.simibubi.worldshape.foundation.PackIndex;
+import com.simibubi.worldshape.foundation.ZipArchive;
+import com.simibubi.worldshape.structure.WStructureProfiler.Counter;
+import com.simibubi.worldshape.structure.WStructureProfiler.Phase;
 
 import net.minecraft.util.RegistryKey;
 import net.minecraft.util.ResourceLocation;
@@ -26,6 +50,7 @@ import net.minecraft.world.gen.ChunkGenerator;
 import net.minecraft.world.gen.DimensionSettings;
 import net.minecraft.world.gen.FlatChunkGenerator;
 import net.minecraft.world.gen.FlatGenerationSettings;
+import net.minecraft.world.gen.GenerationStage.Decoration;
 import net.minecraft.world.gen.feature.ConfiguredFeature;
 import net.minecraft.world.gen.feature.Feature;
 import net.minecraft.world.gen.feature.IFeatureConfig;
@@ -37,15 +62,27 @@ import net.minecraft.world.gen.settings.StructureSeparationSettings;
 import net.minecraft.world.server.ServerWorld;
 import net.minecraftforge.event.world.BiomeLoadingEvent;
 import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.RegistryObject;
 import net.minecraftforge.fml.common.ObfuscationReflectionHelper;
 import net.minecraftforge.registries.DeferredRegister;
 import net.minecraftforge.registries.ForgeRegistries;
 
 public class WStructureRegistry {
 
-	public static final Map<ResourceLocation, WStructureType> CUSTOM_TYPES = new HashMap<>();
+	public static final Map<ResourceLocation, WStructureType> CUSTOM_TYPES = new LinkedHashMap<>();
 	public static final List<ResourceLocation> COLLISION_SURFACE = new ArrayList<>();
 	public static final List<ResourceLocation> COLLISION_CAVE = new ArrayList<>();
+	private static WStructureBiomeIndex biomeIndex = new WStructureBiomeIndex(Collections.emptyList());
+
+	private static final Map<Decoration, List<WStructureType>> CAVE_TYPES = new EnumMap<>(Decoration.class);
+	private static final Map<Decoration, RegistryObject<Feature<NoFeatureConfig>>> CAVE_DISPATCHERS =
+		new EnumMap<>(Decoration.class);
+	private static final Map<Decoration, ConfiguredFeature<?, ?>> CONFIGURED_CAVE_DISPATCHERS =
+		new EnumMap<>(Decoration.class);
+	private static final Map<Decoration, RegistryObject<Feature<NoFeatureConfig>>> CAVE_PIECE_FEATURES =
+		new EnumMap<>(Decoration.class);
+	private static final Map<Decoration, ConfiguredFeature<?, ?>> CONFIGURED_CAVE_PIECE_FEATURES =
+		new EnumMap<>(Decoration.class);
 
 	public static final DeferredRegister<Structure<?>> CUSTOM_STRUCTURES =
 		DeferredRegister.create(ForgeRegistries.STRUCTURE_FEATURES, Worldshape.ID);
@@ -53,16 +90,46 @@ public class WStructureRegistry {
 	public static final DeferredRegister<Feature<?>> CUSTOM_FEATURES =
 		DeferredRegister.create(ForgeRegistries.FEATURES, Worldshape.ID);
 
+	private static final String SPAWNER_FOLDER = "structure_spawners";
+
 	public static void load() {
+		long start = System.nanoTime();
 		String dataFolder = Worldshape.ID + "/data";
 		FilesHelper.createFolderIfMissing(dataFolder);
 
 		CUSTOM_TYPES.clear();
 		COLLISION_SURFACE.clear();
 		COLLISION_CAVE.clear();
+		CAVE_TYPES.clear();
+
+		// Same precedence as the pack index: per file, loose spawners replace archived ones
+		Map<String, SpawnerSource> sourcesByPath = new HashMap<>();
+
+		FilesHelper.forEachInFolder(Paths.get(dataFolder), ".zip", archivePath -> {
+			String packId = PackIndex.getArchiveNamespace(archivePath);
+			ZipArchive archive = null;
+			try {
+				archive = ZipArchive.acquire(archivePath);
+				for (Entry<String, ZipArchive.Entry> entry : archive.getEntries()
+					.subMap(SPAWNER_FOLDER + "/", SPAWNER_FOLDER + "/" + Character.MAX_VALUE)
+					.entrySet()) {
+					String filename = entry.getKey()
+						.substring(SPAWNER_FOLDER.length() + 1);
+					if (filename.contains("/") || !filename.endsWith(".json"))
+						continue;
+					sourcesByPath.put(packId + "/" + filename,
+						new SpawnerSource(packId, filename, archive.read(entry.getValue())));
+				}
+			} catch (IOException e) {
+				Worldshape.LOGGER.warn("Could not read worldshape archive {}", archivePath, e);
+			} finally {
+				if (archive != null)
+					archive.release();
+			}
+		});
 
 		FilesHelper.forEachInFolder(Paths.get(dataFolder), "/", packpath -> {
-			Path structuresFolder = packpath.resolve("structure_spawners");
+			Path structuresFolder = packpath.resolve(SPAWNER_FOLDER);
 			if (!Files.exists(structuresFolder))
 				return;
 			String packId = packpath.getFileName()
@@ -70,35 +137,152 @@ public class WStructureRegistry {
 
 			FilesHelper.forEachInFolder(structuresFolder, ".json", path -> {
 				String filename = path.getFileName()
-					.toString()
-					.replace(".json", "");
+					.toString();
+				try {
+					sourcesByPath.put(packId + "/" + filename,
+						new SpawnerSource(packId, filename, Files.readAllBytes(path)));
+				} catch (IOException e) {
+					Worldshape.LOGGER.warn("Could not read structure spawner {}", path, e);
+				}
+			});
+		});
 
-				ResourceLocation id = Worldshape.asResource(packId + "/" + Lang.asId(FilesHelper.slug(filename)));
-				WStructureType type = new WStructureType(id);
-				type.deserializeJSON(FilesHelper.loadJson(path.toString())
-					.getAsJsonObject());
+		List<SpawnerSource> sources = new ArrayList<>(sourcesByPath.values());
 
-				if (type.getPlacement()
-					.isFeaturePlacement()) {
-					type.registryFeatureObject =
-						CUSTOM_FEATURES.register(id.getPath(), () -> new WCaveStructureFeature(type));
-					CUSTOM_TYPES.put(id, type);
-					if (type.shouldAvoidOthers())
-						COLLISION_CAVE.add(id);
-
-				} else {
-					type.registryStructureObject = CUSTOM_STRUCTURES.register(id.getPath(), () -> new WStructure(type));
-					CUSTOM_TYPES.put(id, type);
-					if (type.shouldAvoidOthers())
-						COLLISION_SURFACE.add(id);
-				}
+		// Directory listings come in no particular order, registration order has to be stable
+		sources.sort(Comparator.comparing((SpawnerSource source) -> source.packId)
+			.thenComparing(source -> source.filename));
 
-			});
+		Path snapshotFile = Paths.get(Worldshape.ID, "cache", "structure_spawners.bin");
+		byte[] sourceHash = hashSources(sources);
+		List<WStructureType> types = WStructureSnapshot.read(snapshotFile, sourceHash);
 
-		});
+		if (types == null) {
+			types = parseSources(sources);
+			WStructureSnapshot.write(snapshotFile, sourceHash, types);
+		}
+
+		types.forEach(WStructureRegistry::register);
+		buildCollisionTable(COLLISION_SURFACE);
+		buildCollisionTable(COLLISION_CAVE);
+		registerCaveDispatchers();
+		biomeIndex = new WStructureBiomeIndex(CUSTOM_TYPES.values());
+		DIMENSION_SPACING.clear();
+		WStructureProfiler.record(Phase.LOAD, start, types.size(), 0);
+	}
+
+	private static void buildCollisionTable(List<ResourceLocation> priorities) {
+		for (int i = 0; i < priorities.size(); i++) {
+			WStructureType type = CUSTOM_TYPES.get(priorities.get(i));
+			List<WStructureType> yieldsTo = new ArrayList<>();
+			for (int j = i + 1; j < priorities.size(); j++) {
+				WStructureType other = CUSTOM_TYPES.get(priorities.get(j));
+				if (type.mayOverlapWith(other))
+					yieldsTo.add(other);
+			}
+			type.yieldsTo = yieldsTo.toArray(new WStructureType[0]);
+		}
+	}
+
+	private static void registerCaveDispatchers() {
+		for (WStructureType type : CUSTOM_TYPES.values())
+			if (type.getPlacement()
+				.isFeaturePlacement())
+				CAVE_TYPES.computeIfAbsent(type.getPlacement()
+					.getDecorationStage(), $ -> new ArrayList<>())
+					.add(type);
+
+		for (Decoration stage : CAVE_TYPES.keySet())
+			if (!CAVE_DISPATCHERS.containsKey(stage))
+				CAVE_DISPATCHERS.put(stage, CUSTOM_FEATURES.register(getDispatcherName(stage),
+					() -> new WCaveStructureDispatcher(stage)));
+
+		for (Decoration stage : CAVE_TYPES.keySet())
+			if (!CAVE_PIECE_FEATURES.containsKey(stage))
+				CAVE_PIECE_FEATURES.put(stage, CUSTOM_FEATURES.register(getPiecesName(stage),
+					() -> new WCavePiecesFeature(stage)));
+	}
+
+	private static String getDispatcherName(Decoration stage) {
+		return "cave_dispatcher_" + stage.name()
+			.toLowerCase(Locale.ROOT);
+	}
+
+	private static String getPiecesName(Decoration stage) {
+		return "cave_pieces_" + stage.name()
+			.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Cave placed types of the given decoration stage, in registration order
+	 */
+	public static List<WStructureType> getCaveTypes(Decoration stage) {
+		return CAVE_TYPES.getOrDefault(stage, Collections.emptyList());
+	}
+
+	private static boolean useCaveDispatcher() {
+		return WorldshapeConfig.SPEC.isLoaded() && WorldshapeConfig.CAVE_DISPATCHER.get();
+	}
+
+	private static List<WStructureType> parseSources(List<SpawnerSource> sources) {
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime()
+			.availableProcessors());
+		try {
+			return pool.submit(() -> sources.parallelStream()
+				.map(SpawnerSource::parse)
+				.collect(Collectors.toList()))
+				.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+				.interrupt();
+			throw new IllegalStateException("Interrupted while loading structure spawners", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException("Could not load structure spawners", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static byte[] hashSources(List<SpawnerSource> sources) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			for (SpawnerSource source : sources) {
+				digest.update(source.packId.getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+				digest.update(source.filename.getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+				digest.update(Ints.toByteArray(source.contents.length));
+				digest.update(source.contents);
+			}
+			return digest.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void register(WStructureType type) {
+		ResourceLocation id = type.getId();
+		type.index = CUSTOM_TYPES.size();
+
+		if (type.getPlacement()
+			.isFeaturePlacement()) {
+			type.registryFeatureObject = CUSTOM_FEATURES.register(id.getPath(), () -> new WCaveStructureFeature(type));
+			CUSTOM_TYPES.put(id, type);
+			if (type.shouldAvoidOthers())
+				COLLISION_CAVE.add(id);
+
+		} else {
+			type.registryStructureObject = CUSTOM_STRUCTURES.register(id.getPath(), () -> new WStructure(type));
+			CUSTOM_TYPES.put(id, type);
+			if (type.shouldAvoidOthers())
+				COLLISION_SURFACE.add(id);
+		}
 	}
 
 	public static void registerConfiguredStructures() {
+		long start = System.nanoTime();
 		for (WStructureType type : CUSTOM_TYPES.values()) {
 
 			if (type.getPlacement()
@@ -117,35 +301,84 @@ public class WStructureRegistry {
 					type.configuredStructureFeature);
 			}
 		}
+
+		for (Entry<Decoration, RegistryObject<Feature<NoFeatureConfig>>> entry : CAVE_DISPATCHERS.entrySet()) {
+			ConfiguredFeature<?, ?> configured = entry.getValue()
+				.get()
+				.configured(IFeatureConfig.NONE);
+			Registry.register(WorldGenRegistries.CONFIGURED_FEATURE,
+				Worldshape.asResource(getDispatcherName(entry.getKey())), configured);
+			CONFIGURED_CAVE_DISPATCHERS.put(entry.getKey(), configured);
+		}
+
+		for (Entry<Decoration, RegistryObject<Feature<NoFeatureConfig>>> entry : CAVE_PIECE_FEATURES.entrySet()) {
+			ConfiguredFeature<?, ?> configured = entry.getValue()
+				.get()
+				.configured(IFeatureConfig.NONE);
+			Registry.register(WorldGenRegistries.CONFIGURED_FEATURE,
+				Worldshape.asResource(getPiecesName(entry.getKey())), configured);
+			CONFIGURED_CAVE_PIECE_FEATURES.put(entry.getKey(), configured);
+		}
+
+		WStructureProfiler.record(Phase.REGISTER_CONFIGURED, start, CUSTOM_TYPES.size(), 0);
 	}
 
 	public static void populateBiomes(BiomeLoadingEvent event) {
-		for (WStructureType type : CUSTOM_TYPES.values()) {
-			if (type.canGenerateIn(event.getName(), event.getCategory())) {
-				if (type.getPlacement()
-					.isFeaturePlacement()) {
-					event.getGeneration()
-						.addFeature(type.getPlacement()
-							.getDecorationStage()
-							.ordinal(), () -> type.configuredFeature);
-
-				} else {
-					event.getGeneration()
-						.getStructures()
-						.add(() -> type.configuredStructureFeature);
+		long start = System.nanoTime();
+		List<WStructureType> types = biomeIndex.getTypes(event.getName(), event.getCategory());
+		boolean dispatch = useCaveDispatcher();
+		Set<Decoration> dispatchedStages = EnumSet.noneOf(Decoration.class);
+
+		for (WStructureType type : types) {
+			if (type.getPlacement()
+				.isFeaturePlacement()) {
+				Decoration stage = type.getPlacement()
+					.getDecorationStage();
+				if (dispatch) {
+					// The dispatcher filters its types by biome again when placing
+					if (dispatchedStages.add(stage))
+						event.getGeneration()
+							.addFeature(stage.ordinal(), () -> CONFIGURED_CAVE_DISPATCHERS.get(stage));
+					continue;
 				}
+				event.getGeneration()
+					.addFeature(type.getPlacement()
+						.getDecorationStage()
+						.ordinal(), () -> type.configuredFeature);
+
+			} else {
+				event.getGeneration()
+					.getStructures()
+					.add(() -> type.configuredStructureFeature);
 			}
 		}
+
+		// Clipped structures reach into chunks of any biome, each stage places what was handed to them
+		if (DeferredCavePieces.updateEnabled())
+			for (Decoration stage : CAVE_TYPES.keySet())
+				event.getGeneration()
+					.addFeature(stage.ordinal(), () -> CONFIGURED_CAVE_PIECE_FEATURES.get(stage));
+		WStructureProfiler.record(Phase.POPULATE_BIOMES, start, types.size(), 0);
 	}
 
 	public static void setupStructureSpacing() {
+		long start = System.nanoTime();
+		int rebuilds = 0;
+
+		// Collect all additions first, so each shared map is only rebuilt once
+		List<WStructureType> structureTypes = new ArrayList<>();
+		List<Structure<?>> noiseAffecting = new ArrayList<>();
+		ImmutableMap.Builder<Structure<?>, StructureSeparationSettings> defaults =
+			ImmutableMap.<Structure<?>, StructureSeparationSettings>builder()
+				.putAll(DimensionStructuresSettings.DEFAULTS);
+
 		for (WStructureType type : CUSTOM_TYPES.values()) {
 			if (type.getPlacement()
 				.isFeaturePlacement())
 				continue;
 
 			Structure<?> structure = type.registryStructureObject.get();
-			StructureSeparationSettings spacing = type.separationSettings;
+			structureTypes.add(type);
 
 			Structure.STRUCTURES_REGISTRY.put(type.getId()
 				.toString(), structure);
@@ -153,84 +386,160 @@ public class WStructureRegistry {
 			if (type.getPlacement()
 				.getTerraformedSurfaceOffset()
 				.isPresent())
-				Structure.NOISE_AFFECTING_FEATURES = ImmutableList.<Structure<?>>builder()
-					.addAll(Structure.NOISE_AFFECTING_FEATURES)
-					.add(structure)
-					.build();
-
-			DimensionStructuresSettings.DEFAULTS = ImmutableMap.<Structure<?>, StructureSeparationSettings>builder()
-				.putAll(DimensionStructuresSettings.DEFAULTS)
-				.put(structure, spacing)
+				noiseAffecting.add(structure);
+
+			defaults.put(structure, type.separationSettings);
+		}
+
+		if (!noiseAffecting.isEmpty()) {
+			Structure.NOISE_AFFECTING_FEATURES = ImmutableList.<Structure<?>>builder()
+				.addAll(Structure.NOISE_AFFECTING_FEATURES)
+				.addAll(noiseAffecting)
 				.build();
+			rebuilds++;
+		}
 
-			for (Entry<RegistryKey<DimensionSettings>, DimensionSettings> settings : WorldGenRegistries.NOISE_GENERATOR_SETTINGS
-				.entrySet()) {
-				if (!type.canGenerateIn(settings.getKey()
-					.location()))
-					continue;
+		if (!structureTypes.isEmpty()) {
+			DimensionStructuresSettings.DEFAULTS = defaults.build();
+			rebuilds++;
+		}
 
-				Map<Structure<?>, StructureSeparationSettings> structureMap = settings.getValue()
-					.structureSettings()
-					.structureConfig();
+		for (Entry<RegistryKey<DimensionSettings>, DimensionSettings> settings : WorldGenRegistries.NOISE_GENERATOR_SETTINGS
+			.entrySet()) {
+			ResourceLocation dimension = settings.getKey()
+				.location();
+			DimensionStructuresSettings structureSettings = settings.getValue()
+				.structureSettings();
+			Map<Structure<?>, StructureSeparationSettings> structureMap = structureSettings.structureConfig();
+
+			for (WStructureType type : structureTypes) {
+				if (!type.canGenerateIn(dimension))
+					continue;
 
 				if (structureMap instanceof ImmutableMap) {
-					Map<Structure<?>, StructureSeparationSettings> tempMap = new HashMap<>(structureMap);
-					tempMap.put(structure, spacing);
-					settings.getValue()
-						.structureSettings().structureConfig = tempMap;
-				} else
-					structureMap.put(structure, spacing);
+					structureMap = new HashMap<>(structureMap);
+					structureSettings.structureConfig = structureMap;
+					rebuilds++;
+				}
+
+				structureMap.put(type.registryStructureObject.get(), type.separationSettings);
 			}
 		}
+
+		WStructureProfiler.record(Phase.SETUP_SPACING, start, structureTypes.size(), rebuilds);
 	}
 
-	private static Method GETCODEC_METHOD;
+	private static MethodHandle GETCODEC_HANDLE;
+	private static final Map<Class<?>, Boolean> SKIPPED_GENERATORS = new ConcurrentHashMap<>();
+	private static final Map<ResourceLocation, DimensionSpacing> DIMENSION_SPACING = new ConcurrentHashMap<>();
 
 	public static void addDimensionalSpacing(final WorldEvent.Load event) {
 		if (!(event.getWorld() instanceof ServerWorld))
 			return;
 
 		ServerWorld serverWorld = (ServerWorld) event.getWorld();
+		long start = System.nanoTime();
 
-		try {
-			if (GETCODEC_METHOD == null)
-				GETCODEC_METHOD = ObfuscationReflectionHelper.findMethod(ChunkGenerator.class, "func_230347_a_");
-			@SuppressWarnings("unchecked")
-			ResourceLocation cgRL = Registry.CHUNK_GENERATOR.getKey(
-				(Codec<? extends ChunkGenerator>) GETCODEC_METHOD.invoke(serverWorld.getChunkSource().generator));
-			if (cgRL != null && cgRL.getNamespace()
-				.equals("terraforged"))
-				return;
-		} catch (Exception e) {
-		}
-
-		RegistryKey<World> dimension = serverWorld.dimension();
 		ChunkGenerator generator = serverWorld.getChunkSource()
 			.getGenerator();
+		if (SKIPPED_GENERATORS.computeIfAbsent(generator.getClass(), $ -> isTerraforged(generator))) {
+			WStructureProfiler.increment(Counter.TERRAFORGED_SKIPS);
+			return;
+		}
 
-		if (generator instanceof FlatChunkGenerator && dimension.equals(World.OVERWORLD))
+		RegistryKey<World> dimension = serverWorld.dimension();
+		if (generator instanceof FlatChunkGenerator && dimension.equals(World.OVERWORLD)) {
+			WStructureProfiler.increment(Counter.FLAT_WORLD_SKIPS);
 			return;
+		}
 
+		DimensionSpacing spacing = DIMENSION_SPACING.computeIfAbsent(dimension.location(), DimensionSpacing::new);
 		DimensionStructuresSettings settings = generator.getSettings();
-		Map<Structure<?>, StructureSeparationSettings> settingMap = new HashMap<>(settings.structureConfig());
+		settings.structureConfig = spacing.applyTo(settings.structureConfig());
+		WStructureProfiler.record(Phase.DIMENSIONAL_SPACING, start, spacing.size(), 1);
+	}
 
-		for (WStructureType type : CUSTOM_TYPES.values()) {
-			if (type.getPlacement()
-				.isFeaturePlacement())
-				continue;
+	private static boolean isTerraforged(ChunkGenerator generator) {
+		try {
+			if (GETCODEC_HANDLE == null)
+				GETCODEC_HANDLE = MethodHandles.lookup()
+					.unreflect(ObfuscationReflectionHelper.findMethod(ChunkGenerator.class, "func_230347_a_"));
+			@SuppressWarnings("unchecked")
+			ResourceLocation cgRL = Registry.CHUNK_GENERATOR
+				.getKey((Codec<? extends ChunkGenerator>) GETCODEC_HANDLE.invoke(generator));
+			return cgRL != null && cgRL.getNamespace()
+				.equals("terraforged");
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Worldshape structures to add to or strip from the structure config of one
+	 * dimension. Computed on first use, as dimensions are only known once worlds
+	 * load.
+	 */
+	private static class DimensionSpacing {
+
+		private final Map<Structure<?>, StructureSeparationSettings> added = new HashMap<>();
+		private final Set<Structure<?>> removed = new HashSet<>();
+
+		DimensionSpacing(ResourceLocation dimension) {
+			for (WStructureType type : CUSTOM_TYPES.values()) {
+				if (type.getPlacement()
+					.isFeaturePlacement())
+					continue;
 
-			Structure<NoFeatureConfig> structure = type.registryStructureObject.get();
-			if (type.canGenerateIn(dimension.location()))
-				settingMap.putIfAbsent(structure, DimensionStructuresSettings.DEFAULTS.get(structure));
-			else
-				settingMap.remove(structure);
+				Structure<NoFeatureConfig> structure = type.registryStructureObject.get();
+				if (type.canGenerateIn(dimension))
+					added.put(structure, DimensionStructuresSettings.DEFAULTS.get(structure));
+				else
+					removed.add(structure);
+			}
+		}
+
+		Map<Structure<?>, StructureSeparationSettings> applyTo(
+			Map<Structure<?>, StructureSeparationSettings> structureConfig) {
+			Map<Structure<?>, StructureSeparationSettings> merged =
+				new HashMap<>(structureConfig.size() + added.size());
+			merged.putAll(added);
+			merged.putAll(structureConfig);
+			merged.keySet()
+				.removeAll(removed);
+			return merged;
+		}
+
+		int size() {
+			return added.size() + removed.size();
 		}
 
-		settings.structureConfig = settingMap;
 	}
 
 	public static WStructureType getType(ResourceLocation id) {
 		return CUSTOM_TYPES.get(id);
 	}
 
+	private static class SpawnerSource {
+
+		final String packId;
+		final String filename;
+		final byte[] contents;
+
+		SpawnerSource(String packId, String filename, byte[] contents) {
+			this.packId = packId;
+			this.filename = filename;
+			this.contents = contents;
+		}
+
+		WStructureType parse() {
+			ResourceLocation id =
+				Worldshape.asResource(packId + "/" + Lang.asId(FilesHelper.slug(filename.replace(".json", ""))));
+			WStructureType type = new WStructureType(id);
+			type.deserializeJSON(FilesHelper.loadJson(new ByteArrayInputStream(contents))
+				.getAsJsonObject());
+			return type;
+		}
+
+	}
+
 }
@@ -0,0 +1,77 @@
+package com.simibubi.worldshape.structure;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.simibubi.worldshape.Worldshape;
+
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * Binary copy of all parsed structure spawners, stored alongside a hash of the
+ * spawner files it was created from. Lets startup skip json parsing when no
+ * pack has changed.
+ */
+public class WStructureSnapshot {
+
+	// Bump whenever the binary layout of types, placements or templates changes
+	private static final int FORMAT = 2;
+
+	@Nullable
+	public static List<WStructureType> read(Path file, byte[] sourceHash) {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (input.readInt() != FORMAT)
+				return null;
+			byte[] hash = new byte[input.readInt()];
+			input.readFully(hash);
+			if (!Arrays.equals(hash, sourceHash))
+				return null;
+
+			int count = input.readInt();
+			List<WStructureType> types = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				WStructureType type = new WStructureType(new ResourceLocation(input.readUTF()));
+				type.deserialize(input);
+				types.add(type);
+			}
+			return types;
+
+		} catch (NoSuchFileException e) {
+		} catch (IOException | RuntimeException e) {
+			Worldshape.LOGGER.warn("Discarding unreadable structure spawner snapshot {}", file, e);
+		}
+		return null;
+	}
+
+	public static void write(Path file, byte[] sourceHash, List<WStructureType> types) {
+		try {
+			Files.createDirectories(file.getParent());
+			try (DataOutputStream output =
+				new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+				output.writeInt(FORMAT);
+				output.writeInt(sourceHash.length);
+				output.write(sourceHash);
+				output.writeInt(types.size());
+				for (WStructureType type : types) {
+					output.writeUTF(type.getId()
+						.toString());
+					type.serialize(output);
+				}
+			}
+		} catch (IOException e) {
+			Worldshape.LOGGER.warn("Could not write structure spawner snapshot {}", file, e);
+		}
+	}
+
+}
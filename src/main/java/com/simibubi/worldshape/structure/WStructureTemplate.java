@@ -1,13 +1,22 @@
 package com.simibubi.worldshape.structure;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
+import javax.annotation.Nullable;
+
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
 import com.mojang.serialization.JsonOps;
 import com.simibubi.worldshape.Worldshape;
+import com.simibubi.worldshape.structure.WStructureProfiler.Counter;
+import com.simibubi.worldshape.structure.WStructureProfiler.Phase;
 
 import net.minecraft.util.JSONUtils;
 import net.minecraft.util.ResourceLocation;
@@ -17,54 +26,141 @@ import net.minecraft.world.gen.feature.jigsaw.JigsawPattern;
 
 public abstract class WStructureTemplate {
 
+	// Resolved patterns of each template, per set of dynamic registries
+	private static final Map<DynamicRegistries, Map<WStructureTemplate, JigsawPattern>> PATTERNS =
+		new ConcurrentHashMap<>();
+
+	String type;
 	ResourceLocation templateId;
 	int maxDepth;
+	boolean cacheLayout;
 
 	public static WStructureTemplate get(ResourceLocation id, JsonElement json) {
 		if (json.isJsonObject()) {
 			JsonObject jo = json.getAsJsonObject();
-			String type = JSONUtils.getAsString(jo, "type", "");
-			if (type.equals("single"))
-				return new SimpleTemplate().read(jo);
-			if (type.equals("pool"))
-				return new PoolTemplate().read(jo);
+			WStructureTemplate template = create(JSONUtils.getAsString(jo, "type", ""));
+			if (template != null)
+				return template.read(jo);
 		}
 		throw new JsonSyntaxException("Cannot find Structure template information for " + id);
 	}
 
+	public static WStructureTemplate get(ResourceLocation id, DataInput input) throws IOException {
+		WStructureTemplate template = create(input.readUTF());
+		if (template == null)
+			throw new IOException("Cannot find Structure template information for " + id);
+		return template.read(input);
+	}
+
+	@Nullable
+	private static WStructureTemplate create(String type) {
+		WStructureTemplate template = null;
+		if (type.equals("single"))
+			template = new SimpleTemplate();
+		if (type.equals("pool"))
+			template = new PoolTemplate();
+		if (template != null)
+			template.type = type;
+		return template;
+	}
+
 	WStructureTemplate read(JsonObject json) {
 		templateId = new ResourceLocation(JSONUtils.getAsString(json, "id"));
 		maxDepth = JSONUtils.getAsInt(json, "maxDepth", 10);
+		cacheLayout = JSONUtils.getAsBoolean(json, "cacheLayout", false);
 		return this;
 	}
 
+	WStructureTemplate read(DataInput input) throws IOException {
+		templateId = new ResourceLocation(input.readUTF());
+		maxDepth = input.readInt();
+		cacheLayout = input.readBoolean();
+		return this;
+	}
+
+	void write(DataOutput output) throws IOException {
+		output.writeUTF(type);
+		output.writeUTF(templateId.toString());
+		output.writeInt(maxDepth);
+		output.writeBoolean(cacheLayout);
+	}
+
 	//
 
 	public Supplier<JigsawPattern> create(DynamicRegistries registries) {
-		return () -> createInner(registries);
+		return () -> getPattern(registries);
+	}
+
+	/**
+	 * Resolves the pattern once per registries, safe to call from any worldgen
+	 * thread
+	 */
+	public JigsawPattern getPattern(DynamicRegistries registries) {
+		Map<WStructureTemplate, JigsawPattern> patterns =
+			PATTERNS.computeIfAbsent(registries, $ -> new ConcurrentHashMap<>());
+		JigsawPattern pattern = patterns.get(this);
+		if (pattern != null) {
+			WStructureProfiler.increment(Counter.PATTERN_CACHE_HITS);
+			return pattern;
+		}
+
+		return patterns.computeIfAbsent(this, $ -> {
+			long start = System.nanoTime();
+			JigsawPattern resolved = createInner(registries);
+			WStructureProfiler.increment(Counter.PATTERN_CACHE_MISSES);
+			WStructureProfiler.record(Phase.RESOLVE_PATTERNS, start, 1, 0);
+			return resolved;
+		});
 	}
-	
+
+	public static void clearPatternCache() {
+		PATTERNS.clear();
+	}
+
 	public int getMaxDepth() {
 		return maxDepth;
 	}
 
+	/**
+	 * Set by pack makers for pools that always assemble the same way for a given
+	 * rotation, so assembled layouts can be re-used
+	 */
+	public boolean shouldCacheLayout() {
+		return cacheLayout;
+	}
+
 	protected abstract JigsawPattern createInner(DynamicRegistries registries);
 
 	//
 
 	static class SimpleTemplate extends WStructureTemplate {
 
-		JsonObject generatedJigsaw = new JsonObject();
-		JigsawPattern cached = null;
 		boolean rigid;
 
 		@Override
 		WStructureTemplate read(JsonObject json) {
 			super.read(json);
 			rigid = !JSONUtils.getAsBoolean(json, "followTerrain", false);
+			return this;
+		}
 
+		@Override
+		WStructureTemplate read(DataInput input) throws IOException {
+			super.read(input);
+			rigid = input.readBoolean();
+			return this;
+		}
+
+		@Override
+		void write(DataOutput output) throws IOException {
+			super.write(output);
+			output.writeBoolean(rigid);
+		}
+
+		private JsonObject generateJigsaw() {
 			String empty = "minecraft:empty";
 
+			JsonObject generatedJigsaw = new JsonObject();
 			JsonArray elements = new JsonArray();
 			JsonObject entry = new JsonObject();
 			JsonObject element = new JsonObject();
@@ -81,17 +177,15 @@ public abstract class WStructureTemplate {
 			generatedJigsaw.add("elements", elements);
 			generatedJigsaw.addProperty("name", templateId.toString() + "_pool");
 			generatedJigsaw.addProperty("fallback", empty);
-			return this;
+			return generatedJigsaw;
 		}
 
 		@Override
 		protected JigsawPattern createInner(DynamicRegistries registries) {
-			if (cached == null)
-				cached = JigsawPattern.CODEC.decode(JsonOps.INSTANCE, generatedJigsaw)
-					.getOrThrow(false, Worldshape.LOGGER::error)
-					.getFirst()
-					.get();
-			return cached;
+			return JigsawPattern.CODEC.decode(JsonOps.INSTANCE, generateJigsaw())
+				.getOrThrow(false, Worldshape.LOGGER::error)
+				.getFirst()
+				.get();
 		}
 
 	}
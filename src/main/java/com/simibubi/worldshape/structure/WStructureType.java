@@ -1,9 +1,15 @@
 package com.simibubi.worldshape.structure;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import com.google.gson.JsonObject;
 
 import net.minecraft.util.JSONUtils;
@@ -29,6 +35,9 @@ public class WStructureType {
 
 	// Instance
 	public StructureSeparationSettings separationSettings;
+	public int index;
+	// Lower priority types that this one backs off from, if they could share a chunk
+	public WStructureType[] yieldsTo = new WStructureType[0];
 
 	// Instance (if structure)
 	public RegistryObject<Structure<NoFeatureConfig>> registryStructureObject;
@@ -74,6 +83,54 @@ public class WStructureType {
 
 	}
 
+	public void deserialize(DataInput input) throws IOException {
+		placement = WStructurePlacement.get(id, input);
+		template = WStructureTemplate.get(id, input);
+		avoidOthers = input.readBoolean();
+		separationSettings = new StructureSeparationSettings(input.readInt(), input.readInt(), input.readInt());
+
+		if (input.readBoolean()) {
+			biomes = new HashSet<>();
+			biomeCategories = new HashSet<>();
+			for (int i = input.readInt(); i > 0; i--)
+				biomes.add(new ResourceLocation(input.readUTF()));
+			for (int i = input.readInt(); i > 0; i--)
+				biomeCategories.add(input.readUTF());
+		}
+
+		if (input.readBoolean()) {
+			dimensions = new HashSet<>();
+			for (int i = input.readInt(); i > 0; i--)
+				dimensions.add(new ResourceLocation(input.readUTF()));
+		}
+	}
+
+	public void serialize(DataOutput output) throws IOException {
+		placement.write(output);
+		template.write(output);
+		output.writeBoolean(avoidOthers);
+		output.writeInt(separationSettings.spacing());
+		output.writeInt(separationSettings.separation());
+		output.writeInt(separationSettings.salt());
+
+		output.writeBoolean(biomes != null);
+		if (biomes != null) {
+			output.writeInt(biomes.size());
+			for (ResourceLocation biome : biomes)
+				output.writeUTF(biome.toString());
+			output.writeInt(biomeCategories.size());
+			for (String category : biomeCategories)
+				output.writeUTF(category);
+		}
+
+		output.writeBoolean(dimensions != null);
+		if (dimensions != null) {
+			output.writeInt(dimensions.size());
+			for (ResourceLocation dimension : dimensions)
+				output.writeUTF(dimension.toString());
+		}
+	}
+
 	public ResourceLocation getId() {
 		return id;
 	}
@@ -82,10 +139,37 @@ public class WStructureType {
 		return biomes == null || biomes.contains(biome) || biomeCategories.contains(category.getName());
 	}
 
+	@Nullable
+	public Set<ResourceLocation> getBiomes() {
+		return biomes;
+	}
+
+	@Nullable
+	public Set<String> getBiomeCategories() {
+		return biomeCategories;
+	}
+
 	public boolean canGenerateIn(ResourceLocation dimension) {
 		return dimensions == null || dimensions.contains(dimension);
 	}
 
+	/**
+	 * False only if no dimension and no biome could possibly host both types.
+	 * Biomes named by id are never assumed to be outside a category filter.
+	 */
+	public boolean mayOverlapWith(WStructureType other) {
+		if (dimensions != null && other.dimensions != null && Collections.disjoint(dimensions, other.dimensions))
+			return false;
+		if (biomes == null || other.biomes == null)
+			return true;
+		if (!biomes.isEmpty() && !other.biomeCategories.isEmpty())
+			return true;
+		if (!biomeCategories.isEmpty() && !other.biomes.isEmpty())
+			return true;
+		return !Collections.disjoint(biomes, other.biomes)
+			|| !Collections.disjoint(biomeCategories, other.biomeCategories);
+	}
+
 	public WStructurePlacement getPlacement() {
 		return placement;
 	}
@@ -0,0 +1,47 @@
+package com.simibubi.worldshape.structure;
+
+import net.minecraft.util.SharedSeedRandom;
+import net.minecraft.util.math.BlockPos;
+
+/**
+ * Reusable randoms and positions of the worldgen thread, instead of fresh ones
+ * for every chunk and type. Each object is only valid until its next use on
+ * the same thread, so none of them may be stored or handed out. Placing a
+ * structure can run other features on the same thread, so objects held across
+ * a placement are claimed first.
+ */
+public class WorldgenScratch {
+
+	private static final ThreadLocal<WorldgenScratch> SCRATCH = ThreadLocal.withInitial(WorldgenScratch::new);
+
+	// Spacing grid lookups, reseeded on every use
+	public final SharedSeedRandom gridRandom = new SharedSeedRandom();
+	// Height searches of cave types, seeded per type and chunk
+	public final SharedSeedRandom placementRandom = new SharedSeedRandom();
+	// Jigsaw assembly and placement of dispatched cave types
+	private final SharedSeedRandom featureRandom = new SharedSeedRandom();
+	private boolean featureRandomClaimed;
+
+	public final BlockPos.Mutable pos = new BlockPos.Mutable();
+
+	public static WorldgenScratch get() {
+		return SCRATCH.get();
+	}
+
+	/**
+	 * The feature random, or a fresh one if a placement further up on this thread
+	 * still holds it
+	 */
+	public SharedSeedRandom claimFeatureRandom() {
+		if (featureRandomClaimed)
+			return new SharedSeedRandom();
+		featureRandomClaimed = true;
+		return featureRandom;
+	}
+
+	public void releaseFeatureRandom(SharedSeedRandom random) {
+		if (random == featureRandom)
+			featureRandomClaimed = false;
+	}
+
+}
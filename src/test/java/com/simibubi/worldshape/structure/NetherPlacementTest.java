@@ -0,0 +1,99 @@
+package com.simibubi.worldshape.structure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonObject;
+import com.simibubi.worldshape.structure.WStructurePlacement.NetherPlacement;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.ChunkPrimer;
+
+public class NetherPlacementTest {
+
+	private static final ResourceLocation ID = new ResourceLocation("worldshape", "test");
+	private static BlockState[] states;
+
+	@BeforeAll
+	public static void bootstrap() {
+		TestWorldgen.bootstrap();
+		states = new BlockState[] { Blocks.AIR.defaultBlockState(), Blocks.CAVE_AIR.defaultBlockState(),
+			Blocks.NETHERRACK.defaultBlockState(), Blocks.WATER.defaultBlockState(), Blocks.LAVA.defaultBlockState() };
+	}
+
+	@Test
+	public void shelfSearchMatchesPerBlockLoop() {
+		Random random = new Random(0x5eedL);
+
+		for (int i = 0; i < 3000; i++) {
+			int chunkX = random.nextInt(2000) - 1000;
+			int chunkZ = random.nextInt(2000) - 1000;
+			int x = chunkX * 16 + random.nextInt(16);
+			int z = chunkZ * 16 + random.nextInt(16);
+			ChunkPrimer chunk = randomChunk(random, chunkX, chunkZ, x, z);
+			int columnIndex = i;
+
+			// Placements of one column share its runs, like types checking the same chunk
+			for (int j = 0; j < 20; j++) {
+				NetherPlacement placement = randomPlacement(random);
+				int surfaceY = random.nextInt(305) - 4;
+				int expected = PerBlockShelfSearch.determineY(placement, chunk, x, z, surfaceY);
+				int found = placement.resolveY(ColumnSample.of(null, x, z), chunk, null, surfaceY);
+				assertEquals(expected, found,
+					() -> "column " + columnIndex + ", " + placement.type + " from y " + surfaceY);
+			}
+		}
+	}
+
+	/**
+	 * Runs of random states in one column. Sections holding a single state are
+	 * filled completely, so the search can skip them through their palette.
+	 */
+	private static ChunkPrimer randomChunk(Random random, int chunkX, int chunkZ, int x, int z) {
+		BlockState[] column = new BlockState[256];
+		for (int y = 0; y < column.length;) {
+			BlockState state = states[random.nextInt(states.length)];
+			int length = random.nextBoolean() ? 16 - (y & 15) : 1 + random.nextInt(12);
+			for (int end = Math.min(y + length, column.length); y < end; y++)
+				column[y] = state;
+		}
+
+		ChunkPrimer chunk = TestWorldgen.emptyChunk(chunkX, chunkZ);
+		BlockPos.Mutable pos = new BlockPos.Mutable();
+		for (int section = 0; section < 16; section++) {
+			int bottom = section * 16;
+			boolean uniform = true;
+			for (int y = bottom + 1; y < bottom + 16; y++)
+				uniform &= column[y] == column[bottom];
+
+			if (uniform) {
+				TestWorldgen.fillLayers(chunk, bottom, bottom + 16, column[bottom]);
+				continue;
+			}
+			for (int y = bottom; y < bottom + 16; y++)
+				chunk.setBlockState(pos.set(x, y, z), column[y], false);
+		}
+		return chunk;
+	}
+
+	private static NetherPlacement randomPlacement(Random random) {
+		int minY = random.nextInt(209) - 8;
+		JsonObject json = new JsonObject();
+		json.addProperty("type", random.nextBoolean() ? "nether" : "cave");
+		json.addProperty("minY", minY);
+		json.addProperty("maxY", Math.min(270, minY + random.nextInt(125) - 4));
+		json.addProperty("ceiling", random.nextBoolean());
+		json.addProperty("pickHighest", random.nextBoolean());
+		json.addProperty("minSpace", 1 + random.nextInt(16));
+		json.addProperty("fluidSurface", random.nextInt(4) == 0);
+		return (NetherPlacement) WStructurePlacement.get(ID, json);
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.simibubi.worldshape.structure;
+
+import java.util.Optional;
+
+import com.simibubi.worldshape.structure.WStructurePlacement.NetherPlacement;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockPos.Mutable;
+import net.minecraft.world.IBlockReader;
+
+/**
+ * The shelf search of nether and cave placements as it was before sections
+ * and runs, one block lookup at a time. Kept as the reference for tests and
+ * benchmarks.
+ */
+public class PerBlockShelfSearch {
+
+	public static int determineY(NetherPlacement placement, IBlockReader reader, int x, int z, int surfaceY) {
+		return determineYInternal(placement, reader, x, z, surfaceY)
+			.filter(i -> i < placement.maxY && i >= placement.minY)
+			.orElse(WStructurePlacement.NO_Y);
+	}
+
+	private static Optional<Integer> determineYInternal(NetherPlacement placement, IBlockReader reader, int x, int z,
+		int surfaceY) {
+		int minY = placement.minY;
+		int maxY = placement.maxY;
+		boolean pickHighest = placement.pickHighest;
+		boolean atCeiling = placement.atCeiling;
+		int minSpace = placement.minSpace;
+		boolean needsWater = placement.needsWater;
+
+		if (surfaceY <= minY)
+			return Optional.empty();
+
+		BlockPos.Mutable searchPos =
+			new Mutable(x, pickHighest ? Math.min(surfaceY, maxY) - 1 : Math.max(1, minY), z);
+		int space = 0;
+		int prevShelf = 0;
+		int direction = pickHighest ? -1 : 1;
+		BlockState airState = placement.getValidAirState();
+
+		while ((!pickHighest || searchPos.getY() >= minY) && (pickHighest || searchPos.getY() < maxY)) {
+			int currentY = searchPos.getY();
+			boolean isAir = reader.getBlockState(searchPos) == airState;
+
+			if (isAir) {
+				if (space == 0)
+					prevShelf = currentY;
+				space++;
+				if (space >= minSpace && !(atCeiling ^ pickHighest) && reader.getBlockState(new BlockPos(x, prevShelf, z))
+					.getFluidState()
+					.isEmpty() != needsWater)
+					return Optional.of(prevShelf);
+
+			} else {
+				if (space >= minSpace && (atCeiling ^ pickHighest) && reader.getBlockState(new BlockPos(x, currentY, z))
+					.getFluidState()
+					.isEmpty() != needsWater)
+					return Optional.of(currentY - direction);
+				space = 0;
+			}
+			searchPos.move(0, direction, 0);
+		}
+
+		return Optional.empty();
+	}
+
+}
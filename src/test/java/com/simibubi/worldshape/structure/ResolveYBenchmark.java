@@ -0,0 +1,73 @@
+package com.simibubi.worldshape.structure;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonObject;
+
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.SharedSeedRandom;
+import net.minecraft.world.gen.ChunkGenerator;
+
+/**
+ * Height resolution of each placement type on a sampled column, as done per
+ * candidate chunk. Run with the gc profiler: resolveY should report a
+ * gc.alloc.rate.norm of 0 B/op, the Optional wrapper shows what boxing costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolveYBenchmark {
+
+	private static final int X = 48;
+	private static final int Z = -32;
+
+	@Param({ "surface", "underground", "nether", "cave" })
+	public String type;
+
+	private ChunkGenerator generator;
+	private WStructurePlacement placement;
+	private SharedSeedRandom random;
+
+	@Setup
+	public void setup() {
+		TestWorldgen.bootstrap();
+		generator = TestWorldgen.flatGenerator();
+		random = new SharedSeedRandom();
+
+		JsonObject json = new JsonObject();
+		json.addProperty("type", type);
+		json.addProperty("minY", 1);
+		placement = WStructurePlacement.get(new ResourceLocation("worldshape", "bench"), json);
+	}
+
+	@Benchmark
+	public int resolveY() {
+		ColumnSample sample = ColumnSample.of(generator, X, Z);
+		random.setLargeFeatureWithSalt(0, X >> 4, Z >> 4, 0);
+		return placement.resolveY(sample, sample.getBaseColumn(), random, sample.getSurfaceHeight());
+	}
+
+	@Benchmark
+	public Optional<Integer> determineY() {
+		ColumnSample sample = ColumnSample.of(generator, X, Z);
+		random.setLargeFeatureWithSalt(0, X >> 4, Z >> 4, 0);
+		return placement.determineY(sample, sample.getBaseColumn(), random, sample.getSurfaceHeight());
+	}
+
+}
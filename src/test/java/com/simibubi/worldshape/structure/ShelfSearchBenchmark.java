@@ -0,0 +1,81 @@
+package com.simibubi.worldshape.structure;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonObject;
+import com.simibubi.worldshape.structure.WStructurePlacement.NetherPlacement;
+
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.chunk.ChunkPrimer;
+
+/**
+ * Shelf searches of nether placements in a nether-like chunk: the per-block
+ * loop they replaced, the first search of a column reading its sections, and
+ * later searches of the same column answered from its cached runs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShelfSearchBenchmark {
+
+	private static final int X = 5;
+	private static final int Z = 9;
+	private static final int SURFACE_Y = 128;
+
+	@Param({ "floor", "ceiling", "pickHighest" })
+	public String search;
+
+	private NetherPlacement placement;
+	private ColumnSample sample;
+	// Alternating between equal chunks makes every search encode its column again
+	private ChunkPrimer[] chunks;
+	private int next;
+
+	@Setup
+	public void setup() {
+		TestWorldgen.bootstrap();
+		chunks = new ChunkPrimer[] { TestWorldgen.netherChunk(0, 0), TestWorldgen.netherChunk(0, 0) };
+		sample = ColumnSample.of(null, X, Z);
+
+		JsonObject json = new JsonObject();
+		json.addProperty("type", "nether");
+		json.addProperty("minY", 32);
+		json.addProperty("maxY", 128);
+		json.addProperty("minSpace", 8);
+		json.addProperty("ceiling", search.equals("ceiling"));
+		json.addProperty("pickHighest", search.equals("pickHighest"));
+		placement = (NetherPlacement) WStructurePlacement.get(new ResourceLocation("worldshape", "bench"), json);
+	}
+
+	@Benchmark
+	public int perBlockLoop() {
+		return PerBlockShelfSearch.determineY(placement, chunks[0], X, Z, SURFACE_Y);
+	}
+
+	@Benchmark
+	public int sectionScan() {
+		next ^= 1;
+		return placement.resolveY(sample, chunks[next], null, SURFACE_Y);
+	}
+
+	@Benchmark
+	public int cachedRuns() {
+		return placement.resolveY(sample, chunks[0], null, SURFACE_Y);
+	}
+
+}
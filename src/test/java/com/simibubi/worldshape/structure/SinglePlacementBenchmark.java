@@ -0,0 +1,147 @@
+package com.simibubi.worldshape.structure;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonObject;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.IntNBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraft.nbt.NBTUtil;
+import net.minecraft.resources.ResourcePackType;
+import net.minecraft.resources.SimpleReloadableResourceManager;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.SharedSeedRandom;
+import net.minecraft.util.datafix.DataFixesManager;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.registry.DynamicRegistries;
+import net.minecraft.world.gen.ChunkGenerator;
+import net.minecraft.world.gen.feature.jigsaw.JigsawManager;
+import net.minecraft.world.gen.feature.structure.AbstractVillagePiece;
+import net.minecraft.world.gen.feature.structure.StructurePiece;
+import net.minecraft.world.gen.feature.structure.VillageConfig;
+import net.minecraft.world.gen.feature.template.TemplateManager;
+import net.minecraft.world.storage.SaveFormat;
+
+/**
+ * Pieces of a single template without jigsaw blocks, built by the direct path
+ * of {@link WStructureAssembler} and by the jigsaw assembly it replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SinglePlacementBenchmark {
+
+	private static final ResourceLocation TEMPLATE_ID = new ResourceLocation("worldshape", "bench_hut");
+	private static final BlockPos ORIGIN = new BlockPos(64, 40, -64);
+
+	private SaveFormat.LevelSave levelSave;
+	private TemplateManager templateManager;
+	private DynamicRegistries registries;
+	private ChunkGenerator generator;
+	private WStructureTemplate template;
+	private SharedSeedRandom random;
+	private List<StructurePiece> pieces;
+
+	@Setup
+	public void setup() throws IOException {
+		TestWorldgen.bootstrap();
+		levelSave = SaveFormat.createDefault(Files.createTempDirectory("worldshape-bench"))
+			.createAccess("bench");
+		templateManager = new TemplateManager(new SimpleReloadableResourceManager(ResourcePackType.SERVER_DATA),
+			levelSave, DataFixesManager.getDataFixer());
+		templateManager.getOrCreate(TEMPLATE_ID)
+			.load(hut(7, 5, 9));
+
+		registries = DynamicRegistries.builtin();
+		generator = TestWorldgen.flatGenerator();
+		random = new SharedSeedRandom();
+		pieces = new ArrayList<>();
+
+		JsonObject json = new JsonObject();
+		json.addProperty("type", "single");
+		json.addProperty("id", TEMPLATE_ID.toString());
+		template = WStructureTemplate.get(TEMPLATE_ID, json);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		levelSave.close();
+	}
+
+	@Benchmark
+	public List<StructurePiece> directPlacement() {
+		pieces.clear();
+		random.setLargeFeatureWithSalt(0, 4, -4, 0);
+		WStructureAssembler.addPieces(template, registries, AbstractVillagePiece::new, generator, templateManager,
+			ORIGIN, pieces, random, true, false);
+		return pieces;
+	}
+
+	@Benchmark
+	public List<StructurePiece> jigsawAssembly() {
+		pieces.clear();
+		random.setLargeFeatureWithSalt(0, 4, -4, 0);
+		VillageConfig jigsawConfig = new VillageConfig(template.create(registries), template.getMaxDepth());
+		JigsawManager.addPieces(registries, jigsawConfig, AbstractVillagePiece::new, generator, templateManager,
+			ORIGIN, pieces, random, true, false);
+		return pieces;
+	}
+
+	/**
+	 * Template data of a hollow cobblestone box
+	 */
+	private static CompoundNBT hut(int sizeX, int sizeY, int sizeZ) {
+		BlockState wall = Blocks.COBBLESTONE.defaultBlockState();
+		ListNBT palette = new ListNBT();
+		palette.add(NBTUtil.writeBlockState(wall));
+
+		ListNBT blocks = new ListNBT();
+		for (int x = 0; x < sizeX; x++)
+			for (int y = 0; y < sizeY; y++)
+				for (int z = 0; z < sizeZ; z++) {
+					if (x > 0 && y > 0 && z > 0 && x < sizeX - 1 && y < sizeY - 1 && z < sizeZ - 1)
+						continue;
+					CompoundNBT block = new CompoundNBT();
+					block.put("pos", intList(x, y, z));
+					block.putInt("state", 0);
+					blocks.add(block);
+				}
+
+		CompoundNBT nbt = new CompoundNBT();
+		nbt.put("size", intList(sizeX, sizeY, sizeZ));
+		nbt.put("palette", palette);
+		nbt.put("blocks", blocks);
+		nbt.put("entities", new ListNBT());
+		return nbt;
+	}
+
+	private static ListNBT intList(int... values) {
+		ListNBT list = new ListNBT();
+		for (int value : values)
+			list.add(IntNBT.valueOf(value));
+		return list;
+	}
+
+}
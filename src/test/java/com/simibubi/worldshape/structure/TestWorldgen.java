@@ -0,0 +1,102 @@
+package com.simibubi.worldshape.structure;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+
+import sun.misc.Unsafe;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.registry.Bootstrap;
+import net.minecraft.util.registry.WorldGenRegistries;
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.chunk.IChunk;
+import net.minecraft.world.chunk.UpgradeData;
+import net.minecraft.world.gen.ChunkGenerator;
+import net.minecraft.world.gen.FlatChunkGenerator;
+import net.minecraft.world.gen.FlatGenerationSettings;
+import net.minecraft.world.gen.WorldGenRegion;
+
+/**
+ * Vanilla registries and worldgen objects for tests and benchmarks, which run
+ * without a game
+ */
+public class TestWorldgen {
+
+	public static void bootstrap() {
+		Bootstrap.bootStrap();
+	}
+
+	/**
+	 * The default superflat generator, its columns need no noise
+	 */
+	public static ChunkGenerator flatGenerator() {
+		return new FlatChunkGenerator(FlatGenerationSettings.getDefault(WorldGenRegistries.BIOME));
+	}
+
+	/**
+	 * A decoration region of size by size chunks centered on chunk 0, 0, every one
+	 * of them backed by the given chunk. Built without a server, so only block,
+	 * chunk and seed lookups work.
+	 */
+	public static WorldGenRegion region(long seed, int size, IChunk chunk) {
+		try {
+			Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
+			unsafeField.setAccessible(true);
+			Object region = ((Unsafe) unsafeField.get(null)).allocateInstance(WorldGenRegion.class);
+
+			int radius = size / 2;
+			setField(region, "cache", Collections.nCopies(size * size, chunk));
+			setField(region, "x", 0);
+			setField(region, "z", 0);
+			setField(region, "size", size);
+			setField(region, "seed", seed);
+			setField(region, "firstPos", new ChunkPos(-radius, -radius));
+			setField(region, "lastPos", new ChunkPos(radius, radius));
+			return (WorldGenRegion) region;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void setField(Object object, String name, Object value) throws ReflectiveOperationException {
+		Field field = WorldGenRegion.class.getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(object, value);
+	}
+
+	public static ChunkPrimer emptyChunk(int chunkX, int chunkZ) {
+		return new ChunkPrimer(new ChunkPos(chunkX, chunkZ), UpgradeData.EMPTY);
+	}
+
+	/**
+	 * Fills the whole chunk from y up to, but not including, toY
+	 */
+	public static void fillLayers(ChunkPrimer chunk, int y, int toY, BlockState state) {
+		BlockPos.Mutable pos = new BlockPos.Mutable();
+		ChunkPos chunkPos = chunk.getPos();
+		for (; y < toY; y++)
+			for (int x = 0; x < 16; x++)
+				for (int z = 0; z < 16; z++)
+					chunk.setBlockState(pos.set(chunkPos.getMinBlockX() + x, y, chunkPos.getMinBlockZ() + z), state,
+						false);
+	}
+
+	/**
+	 * Bedrock floor and roof, netherrack with an open cave, a lava pool and
+	 * nothing above the roof
+	 */
+	public static ChunkPrimer netherChunk(int chunkX, int chunkZ) {
+		ChunkPrimer chunk = emptyChunk(chunkX, chunkZ);
+		fillLayers(chunk, 0, 4, Blocks.BEDROCK.defaultBlockState());
+		fillLayers(chunk, 4, 24, Blocks.NETHERRACK.defaultBlockState());
+		fillLayers(chunk, 24, 32, Blocks.LAVA.defaultBlockState());
+		fillLayers(chunk, 32, 40, Blocks.NETHERRACK.defaultBlockState());
+		fillLayers(chunk, 70, 123, Blocks.NETHERRACK.defaultBlockState());
+		fillLayers(chunk, 123, 128, Blocks.BEDROCK.defaultBlockState());
+		return chunk;
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.simibubi.worldshape.structure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.simibubi.worldshape.foundation.Pair;
+
+import net.minecraft.util.SharedSeedRandom;
+import net.minecraft.world.gen.settings.StructureSeparationSettings;
+
+public class WStructureGridTest {
+
+	@Test
+	public void cellSearchMatchesSquareScan() {
+		Random random = new Random(0x5eedL);
+		SharedSeedRandom gridRandom = new SharedSeedRandom();
+		SharedSeedRandom scanRandom = new SharedSeedRandom();
+
+		for (int i = 0; i < 100000; i++) {
+			int spacing = 2 + random.nextInt(64);
+			int separation = random.nextInt(spacing);
+			StructureSeparationSettings settings =
+				new StructureSeparationSettings(spacing, separation, random.nextInt(Integer.MAX_VALUE));
+			long seed = random.nextLong();
+			int radius = random.nextInt(17);
+			int chunkX = random.nextInt(200000) - 100000;
+			int chunkZ = random.nextInt(200000) - 100000;
+
+			Pair<Integer, Integer> expected = scanSquare(settings, seed, scanRandom, chunkX, chunkZ, radius);
+			Pair<Integer, Integer> found =
+				WStructureGrid.findNearby(settings, null, seed, gridRandom, chunkX, chunkZ, radius);
+			assertEquals(expected, found, () -> "spacing " + spacing + ", separation " + separation + ", seed "
+				+ seed + ", radius " + radius + " at " + chunkX + ", " + chunkZ);
+		}
+	}
+
+	/**
+	 * The search as it was before spacing cells: every chunk of the (2r+1)^2
+	 * square, x first
+	 */
+	private static Pair<Integer, Integer> scanSquare(StructureSeparationSettings settings, long seed,
+		SharedSeedRandom random, int chunkX, int chunkZ, int radius) {
+		for (int i = chunkX - radius; i <= chunkX + radius; ++i) {
+			for (int j = chunkZ - radius; j <= chunkZ + radius; ++j) {
+				int spacing = settings.spacing();
+				int cellX = Math.floorDiv(i, spacing);
+				int cellZ = Math.floorDiv(j, spacing);
+				random.setLargeFeatureWithSalt(seed, cellX, cellZ, settings.salt());
+				int x = cellX * spacing + random.nextInt(spacing - settings.separation());
+				int z = cellZ * spacing + random.nextInt(spacing - settings.separation());
+				if (i == x && j == z)
+					return Pair.of(i, j);
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.simibubi.worldshape.structure;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.gson.JsonObject;
+
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.gen.ChunkGenerator;
+import net.minecraft.world.gen.WorldGenRegion;
+
+/**
+ * The grid and height checks of a cave feature over the chunks of a region, run
+ * through {@link WCaveStructureFeature} itself. Run it with the gc profiler on
+ * a build before {@link WorldgenScratch} and on one after, and compare
+ * gc.alloc.rate.norm. Generating the pieces needs a running server and is not
+ * covered.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldgenScratchBenchmark {
+
+	private static final long SEED = 12345;
+	private static final int SIZE = 17;
+
+	private ChunkGenerator generator;
+	private WorldGenRegion region;
+	private WCaveStructureFeature feature;
+	private int chunk;
+
+	@Setup
+	public void setup() {
+		TestWorldgen.bootstrap();
+		generator = TestWorldgen.flatGenerator();
+		region = TestWorldgen.region(SEED, SIZE, TestWorldgen.netherChunk(0, 0));
+
+		ResourceLocation id = new ResourceLocation("worldshape", "bench");
+		JsonObject placement = new JsonObject();
+		placement.addProperty("type", "cave");
+		placement.addProperty("minY", 32);
+		placement.addProperty("maxY", 128);
+		JsonObject template = new JsonObject();
+		template.addProperty("type", "single");
+		template.addProperty("id", "minecraft:bench");
+		JsonObject json = new JsonObject();
+		json.add("placement", placement);
+		json.add("template", template);
+		json.addProperty("averageSpacing", 4);
+
+		WStructureType type = new WStructureType(id);
+		type.deserializeJSON(json);
+		WStructureRegistry.CUSTOM_TYPES.put(id, type);
+		feature = new WCaveStructureFeature(type);
+	}
+
+	@Benchmark
+	public void caveChecks(Blackhole blackhole) {
+		int index = chunk++ % (SIZE * SIZE);
+		int chunkX = index % SIZE - SIZE / 2;
+		int chunkZ = index / SIZE - SIZE / 2;
+
+		blackhole.consume(feature.isFeatureChunk(SEED, chunkX, chunkZ));
+		ColumnSample sample = ColumnSample.of(generator, chunkX * 16, chunkZ * 16);
+		blackhole.consume(feature.determineY(region, sample));
+	}
+
+}